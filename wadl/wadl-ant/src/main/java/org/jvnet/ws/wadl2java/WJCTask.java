@@ -19,6 +19,7 @@
 
 package org.jvnet.ws.wadl2java;
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -50,13 +51,22 @@ import com.sun.codemodel.writer.FileCodeWriter;
  * &lt;target name="-pre-compile"&gt;
  *   &lt;echo message="Compiling the description..." /&gt;
  *   &lt;wjc description="file.wadl" package="com.yahoo.search"
- *       autoSchemaPackage="true|false" target="gen-src"&gt;
+ *       autoSchemaPackage="true|false" target="gen-src"
+ *       incremental="true|false"&gt;
  *     &lt;customizations dir="." includes="binding.xjc"/&gt;
  *     &lt;produces dir="gen-src/com/yahoo/search" includes="*.java"/&gt;
  *     &lt;depends dir="." includes="schema.xsd"/&gt;
  *     &lt;customClassName uri="http://yahoo.com/rest" classname="YahooRest" /&gt;
  *   &lt;/wjc&gt;
  * &lt;/target&gt;</pre>
+ *
+ * <p>By default the <code>produces</code> and <code>depends</code> filesets
+ * are used, with file time stamps, to decide whether compilation can be
+ * skipped. When <code>incremental</code> is true the task instead records a
+ * {@link GenerationManifest} of content hashes for the description, every
+ * WADL and schema document it includes and the customizations, and skips
+ * compilation when none of them nor the attributes have changed; the
+ * filesets are then not consulted.</p>
 
  * @author mh124079
  */
@@ -91,6 +101,8 @@ public class WJCTask extends Task {
     private List<FileSet> producedFileSets;
     private List<FileSet> consumedFileSets;
     private List<FileSet> customizationFileSets;
+    private boolean incremental;
+    private File manifest;
     private List<ClassNameMapper> customClassNames
             = new ArrayList<ClassNameMapper>();
     /**
@@ -160,6 +172,27 @@ public class WJCTask extends Task {
         this.target = target;
     }
     
+    /**
+     * Controls whether the up-to-date check uses a manifest of content hashes
+     * covering every document the description includes (true) or the time
+     * stamps of the <code>produces</code> and <code>depends</code> filesets
+     * (false, the default).
+     * @param incremental whether to use the content hash check.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+    
+    /**
+     * Set the file in which the manifest for the content hash check is kept,
+     * by default a file in the target directory named after the description
+     * and package so that several tasks can share the same target.
+     * @param manifest the manifest file.
+     */
+    public void setManifest(File manifest) {
+        this.manifest = manifest;
+    }
+    
     /**
      * Add a pre-configured FileSet for a <code>produces</code> child element.
      * The fileset defines a set of files produced by this task and is used 
@@ -207,6 +240,8 @@ public class WJCTask extends Task {
         producedFileSets = new ArrayList<FileSet>();
         consumedFileSets = new ArrayList<FileSet>();
         customizationFileSets = new ArrayList<FileSet>();
+        incremental = false;
+        manifest = null;
     }
 
     /**
@@ -243,6 +278,30 @@ public class WJCTask extends Task {
             if (!fileDesc.isFile())
                 throw new BuildException(Wadl2JavaMessages.WADL_DESCRIPTION_FILE(desc.toString()));
             desc = fileDesc.toURI();
+        }
+        
+        //
+        Map<String, String> classCustomization = new HashMap<String,String>();
+        for (ClassNameMapper mapper : this.customClassNames)
+        {
+           classCustomization.put(mapper.uri, mapper.classname); 
+        }
+        
+        Wadl2Java.Parameters parameters = new Wadl2Java.Parameters()
+                .setRootDir(target.toURI())
+                .setPkg(pkg)
+                .setAutoPackage(autoPackage)
+                .setGenerationStyle(generationStyle)
+                .setCustomizationsAsFiles(customizations)
+                .setCustomClassNames(classCustomization);
+        
+        if (incremental) {
+            compileIfChanged(parameters);
+            return;
+        }
+        
+        if (desc.getScheme().equals("file")) {
+            File fileDesc = new File(desc);
 
             // check if description has changed since code was last generated
             long earliestProducedFileStamp = Long.MAX_VALUE;
@@ -276,27 +335,60 @@ public class WJCTask extends Task {
             }
         }
         
-        //
-        Map<String, String> classCustomization = new HashMap<String,String>();
-        for (ClassNameMapper mapper : this.customClassNames)
-        {
-           classCustomization.put(mapper.uri, mapper.classname); 
+        // pre-requisites satisfied, compile the description
+        try {
+            Wadl2Java wadlProcessor = new Wadl2Java(parameters
+                .setCodeWriter(new FileCodeWriter(target)));
+            wadlProcessor.process(desc);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            throw new BuildException(Wadl2JavaMessages.PROCESSING_FAILED(), ex);
         }
+    }
+    
+    /**
+     * Compile the description unless the manifest from the last successful
+     * compilation shows that the description, the documents it includes,
+     * the customizations and the parameters all have the same content.
+     * @param parameters the parameters, without a code writer.
+     * @throws org.apache.tools.ant.BuildException if processing of the WADL file fails.
+     */
+    private void compileIfChanged(Wadl2Java.Parameters parameters) throws BuildException {
+        File manifestFile = manifest != null ? manifest : new File(target, 
+                GenerationManifest.DEFAULT_FILE_NAME + "-" 
+                + GenerationManifest.hash(desc + "\n" + pkg).substring(0, 16));
+        String fingerprint = parameters.getFingerprint() + "\nwadl=" + desc;
         
-        // pre-requisites satisfied, compile the description
+        GenerationManifest previous = GenerationManifest.load(manifestFile);
+        if (previous != null && previous.isUpToDate(fingerprint, target)) {
+            log(Wadl2JavaMessages.SKIPPING_UNCHANGED(desc.toString(),
+                    previous.getDocuments().size(), 
+                    previous.getGeneratedFiles().size()));
+            return;
+        }
+        
+        // Never trust the manifest of a compilation that didn't complete
+        if (manifestFile.exists() && !manifestFile.delete()) {
+            throw new BuildException(Wadl2JavaMessages.MANIFEST_NOT_DELETED(
+                    manifestFile.getAbsolutePath()));
+        }
+        
+        GenerationManifest current = new GenerationManifest(fingerprint);
         try {
-            Wadl2Java wadlProcessor = new Wadl2Java(new Wadl2Java.Parameters()
-                .setRootDir(target.toURI())
-                .setCodeWriter(new FileCodeWriter(target))
-                .setPkg(pkg)
-                .setAutoPackage(autoPackage)
-                .setGenerationStyle(generationStyle)
-                .setCustomizationsAsFiles(customizations)
-                .setCustomClassNames(classCustomization));
+            Wadl2Java wadlProcessor = new Wadl2Java(parameters
+                .setCodeWriter(current.record(new FileCodeWriter(target))));
             wadlProcessor.process(desc);
+            current.addDocuments(wadlProcessor.getProcessedDocuments());
         } catch (Exception ex) {
             ex.printStackTrace();
             throw new BuildException(Wadl2JavaMessages.PROCESSING_FAILED(), ex);
         }
+        
+        try {
+            current.store(manifestFile);
+        } catch (IOException ex) {
+            // Only costs a compilation next time around
+            log(ex.getMessage());
+        }
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl2java;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Target;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertFalse;
+
+
+/**
+ * Check the up-to-date handling of the {@link WJCTask}.
+ */
+public class WJCTaskTest {
+
+    private static final String WADL =
+            "<application xmlns=\"http://wadl.dev.java.net/2009/02\">\n"
+            + "  <resources base=\"http://example.com/api/\">\n"
+            + "    <resource path=\"items\">\n"
+            + "      <method name=\"GET\" id=\"listItems\">\n"
+            + "        <response status=\"200\">\n"
+            + "          <representation mediaType=\"text/plain\"/>\n"
+            + "        </response>\n"
+            + "      </method>\n"
+            + "    </resource>\n"
+            + "  </resources>\n"
+            + "</application>\n";
+
+    private static final String MARKER = "// marker";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File target;
+
+    @Before
+    public void createDescription() throws IOException {
+        write(new File(folder.getRoot(), "simple.wadl"), WADL);
+        target = folder.newFolder("gen-src");
+    }
+
+    /**
+     * A second run with the same inputs is skipped, and a run with a
+     * different attribute compiles the description again.
+     */
+    @Test
+    public void testIncremental() throws IOException {
+        WJCTask task = createTask();
+        task.setIncremental(true);
+        task.execute();
+
+        File generated = findGenerated();
+        write(generated, MARKER);
+
+        // Nothing has changed so the marker should survive
+        task = createTask();
+        task.setIncremental(true);
+        task.execute();
+        assertThat(read(generated), equalTo(MARKER));
+
+        // A different attribute should cause the code to be generated again
+        task = createTask();
+        task.setIncremental(true);
+        task.setAutoSchemaPackage(true);
+        task.execute();
+        assertThat(read(generated), not(equalTo(MARKER)));
+    }
+
+    /**
+     * Without the incremental attribute the task keeps relying on the
+     * filesets, so with none given it always compiles and writes no manifest.
+     */
+    @Test
+    public void testNotIncrementalByDefault() throws IOException {
+        WJCTask task = createTask();
+        task.execute();
+
+        File generated = findGenerated();
+        write(generated, MARKER);
+
+        task = createTask();
+        task.execute();
+        assertThat(read(generated), not(equalTo(MARKER)));
+
+        for (String name : target.list()) {
+            assertThat(name, not(startsWith(GenerationManifest.DEFAULT_FILE_NAME)));
+        }
+    }
+
+    private WJCTask createTask() {
+        Project project = new Project();
+        project.init();
+        project.setBaseDir(folder.getRoot());
+        Target owner = new Target();
+        owner.setProject(project);
+
+        WJCTask task = new WJCTask();
+        task.setProject(project);
+        task.setOwningTarget(owner);
+        task.init();
+        task.setPackage("test");
+        task.setTarget(target);
+        task.setDescription(URI.create("simple.wadl"));
+        return task;
+    }
+
+    private File findGenerated() {
+        List<File> files = new ArrayList<File>();
+        collect(target, files);
+        assertFalse("Generated some code", files.isEmpty());
+        return files.get(0);
+    }
+
+    private static void collect(File dir, List<File> files) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                collect(file, files);
+            } else if (file.getName().endsWith(".java")) {
+                files.add(file);
+            }
+        }
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(text.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < content.length) {
+                offset += is.read(content, offset, content.length - offset);
+            }
+        } finally {
+            is.close();
+        }
+        return new String(content, "UTF-8");
+    }
+}
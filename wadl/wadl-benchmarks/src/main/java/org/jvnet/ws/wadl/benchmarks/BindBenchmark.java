@@ -0,0 +1,32 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import com.sun.tools.xjc.api.S2JJAXBModel;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times the XJC <code>bind</code> of the schemas found in a description.
+ */
+public class BindBenchmark extends StageBenchmark {
+
+    @Override
+    protected void prepare(Pipeline pipeline) throws Exception {
+        pipeline.parse();
+        pipeline.buildAst();
+    }
+
+    @Benchmark
+    public S2JJAXBModel bind() throws Exception {
+        return pipeline.bind();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import org.jvnet.ws.wadl.ast.ApplicationNode;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times building the abstract tree from a description that has already
+ * been read.
+ */
+public class BuildAstBenchmark extends StageBenchmark {
+
+    @Override
+    protected void prepare(Pipeline pipeline) throws Exception {
+        pipeline.parse();
+    }
+
+    @Benchmark
+    public ApplicationNode buildAst() throws Exception {
+        return pipeline.buildAst();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import org.jvnet.ws.wadl.util.DocumentResolver;
+import org.jvnet.ws.wadl.util.SyntheticWadl;
+
+/**
+ * A set of documents held in memory, so that the benchmarks measure the
+ * processing of a description rather than the file system or network.
+ */
+final class Documents implements DocumentResolver {
+
+    /**
+     * The base URI of every document, which is never actually fetched.
+     */
+    static final URI BASE = URI.create("http://benchmark.example.com/");
+
+    /**
+     * The prefix of a description parameter for a {@link SyntheticWadl}
+     * description, it is followed by the number of resources.
+     */
+    static final String SYNTHETIC = "synthetic-";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<URI, byte[]> content = new HashMap<URI, byte[]>();
+    private final URI root;
+
+    private Documents(String name) {
+        this.root = BASE.resolve(name);
+    }
+
+    /**
+     * Load the documents for a benchmark description parameter, either
+     * <code>synthetic-</code> followed by a number of resources or the name
+     * of one of the samples.
+     *
+     * @param description the description parameter.
+     * @return the documents.
+     * @throws IOException if a sample cannot be read.
+     */
+    static Documents forDescription(String description) throws IOException {
+        if (description.startsWith(SYNTHETIC)) {
+            SyntheticWadl generator = new SyntheticWadl()
+                    .setResources(Integer.parseInt(description.substring(SYNTHETIC.length())))
+                    .setResourceTypes(10)
+                    .setSharedParams(5)
+                    .setElements(20)
+                    .setSchemaStyle(SyntheticWadl.SchemaStyle.INCLUDED);
+            Documents documents = new Documents("application.wadl");
+            StringWriter out = new StringWriter();
+            generator.writeDescription(out);
+            documents.content.put(documents.root, out.toString().getBytes(UTF8));
+            out = new StringWriter();
+            generator.writeSchema(out);
+            documents.content.put(BASE.resolve(generator.getSchemaHref()),
+                    out.toString().getBytes(UTF8));
+            return documents;
+        }
+
+        Documents documents = new Documents(description);
+        documents.load(description);
+        return documents;
+    }
+
+    /**
+     * @return the URI of the root description.
+     */
+    URI getRoot() {
+        return root;
+    }
+
+    public InputStream openStream(URI uri) throws IOException {
+        byte[] bytes = content.get(uri);
+        if (bytes == null) {
+            // Included documents are read from the samples on first use
+            bytes = load(BASE.relativize(uri).toString());
+        }
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private byte[] load(String name) throws IOException {
+        InputStream is = Documents.class.getResourceAsStream("/samples/" + name);
+        if (is == null) {
+            throw new FileNotFoundException(name);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            byte[] bytes = out.toByteArray();
+            content.put(BASE.resolve(name), bytes);
+            return bytes;
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import com.sun.codemodel.JCodeModel;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times {@link org.jvnet.ws.wadl2java.common.BaseResourceClassGenerator#generateEndpointClass(java.net.URI, org.jvnet.ws.wadl.ast.ResourceNode)}
+ * for each root resource, along with the resource type interfaces, once
+ * the JAXB classes have been generated.
+ */
+public class GenerateBenchmark extends StageBenchmark {
+
+    @Override
+    protected void prepare(Pipeline pipeline) throws Exception {
+        pipeline.parse();
+        pipeline.buildAst();
+        pipeline.bind();
+        pipeline.generateSchemaClasses();
+    }
+
+    @Benchmark
+    public JCodeModel generate() throws Exception {
+        return pipeline.generate();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import org.jvnet.ws.wadl.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times {@link org.jvnet.ws.wadl.ast.WadlAstBuilder#processDescription(java.net.URI)},
+ * reading the description and any documents it includes.
+ */
+public class ParseBenchmark extends StageBenchmark {
+
+    @Override
+    protected void prepare(Pipeline pipeline) throws Exception {
+        // Reading the description is the first stage
+    }
+
+    @Benchmark
+    public Application parse() throws Exception {
+        return pipeline.parse();
+    }
+}
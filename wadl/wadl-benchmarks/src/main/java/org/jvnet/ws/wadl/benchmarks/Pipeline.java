@@ -0,0 +1,298 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JClassAlreadyExistsException;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JPackage;
+import com.sun.codemodel.JType;
+import com.sun.tools.xjc.api.ErrorListener;
+import com.sun.tools.xjc.api.Mapping;
+import com.sun.tools.xjc.api.S2JJAXBModel;
+import com.sun.tools.xjc.api.SchemaCompiler;
+import com.sun.tools.xjc.api.impl.s2j.SchemaCompilerImpl;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Iterator;
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+import org.jvnet.ws.wadl.Application;
+import org.jvnet.ws.wadl.ast.AbstractNode;
+import org.jvnet.ws.wadl.ast.ApplicationNode;
+import org.jvnet.ws.wadl.ast.InvalidWADLException;
+import org.jvnet.ws.wadl.ast.ResourceNode;
+import org.jvnet.ws.wadl.ast.ResourceTypeNode;
+import org.jvnet.ws.wadl.ast.WadlAstBuilder;
+import org.jvnet.ws.wadl.util.MessageListener;
+import org.jvnet.ws.wadl2java.JavaDocUtil;
+import org.jvnet.ws.wadl2java.Resolver;
+import org.jvnet.ws.wadl2java.Wadl2Java;
+import org.jvnet.ws.wadl2java.jaxrs.JAXRS20ResourceClassGenerator;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * The stages of {@link Wadl2Java#process(URI)} pulled apart so that each can
+ * be run and timed on its own. A pipeline is used once: each stage must be
+ * called in turn, after the stages before it, and holds on to its result
+ * for the next.
+ */
+final class Pipeline {
+
+    /**
+     * The package of the generated classes.
+     */
+    static final String PACKAGE = "org.example.benchmark";
+
+    /**
+     * Discards informational messages so they don't end up in the timings.
+     */
+    private static final MessageListener QUIET = new MessageListener() {
+        public void warning(String message, Throwable throwable) {
+        }
+
+        public void info(String message) {
+        }
+
+        public void error(String message, Throwable throwable) {
+            throw new IllegalStateException(message, throwable);
+        }
+    };
+
+    /**
+     * Treat any schema error as a failure of the benchmark rather than
+     * timing a broken run.
+     */
+    private static final ErrorListener SCHEMA_ERRORS = new ErrorListener() {
+        public void error(SAXParseException exception) {
+            throw new IllegalStateException(exception);
+        }
+
+        public void fatalError(SAXParseException exception) {
+            throw new IllegalStateException(exception);
+        }
+
+        public void warning(SAXParseException exception) {
+        }
+
+        public void info(SAXParseException exception) {
+        }
+    };
+
+    private final Documents documents;
+    private final SchemaCompiler s2j;
+    private final StagedAstBuilder astBuilder;
+    private final Wadl2Java.Parameters parameters;
+    private Application application;
+    private ApplicationNode ast;
+    private S2JJAXBModel s2jModel;
+    private JCodeModel codeModel;
+    private String generatedPackages = "";
+
+    /**
+     * @param documents the description to process.
+     */
+    Pipeline(Documents documents) {
+        this.documents = documents;
+        this.s2j = new SchemaCompilerImpl();
+        s2j.setDefaultPackageName(PACKAGE);
+        s2j.setErrorListener(SCHEMA_ERRORS);
+        this.astBuilder = new StagedAstBuilder(new WadlAstBuilder.SchemaCallback() {
+            public void processSchema(InputSource input) {
+                s2j.parseSchema(input);
+            }
+
+            public void processSchema(String uri, Element node) {
+                s2j.parseSchema(uri, node);
+            }
+        });
+        astBuilder.setDocumentResolver(documents);
+        this.parameters = new Wadl2Java.Parameters()
+                .setPkg(PACKAGE)
+                .setGenerationStyle(Wadl2Java.STYLE_JAXRS20)
+                .setMessageListener(QUIET);
+    }
+
+    /**
+     * Run every stage.
+     *
+     * @return the number of bytes of source generated.
+     */
+    long run() throws JAXBException, IOException, InvalidWADLException,
+            JClassAlreadyExistsException {
+        parse();
+        buildAst();
+        bind();
+        generateSchemaClasses();
+        generate();
+        return write();
+    }
+
+    /**
+     * Read the description and any documents it refers to.
+     *
+     * @return the root application element.
+     */
+    Application parse() throws JAXBException, IOException {
+        application = astBuilder.parse(documents.getRoot());
+        return application;
+    }
+
+    /**
+     * Build the abstract tree from the parsed documents.
+     *
+     * @return the tree.
+     */
+    ApplicationNode buildAst() throws InvalidWADLException {
+        ast = astBuilder.build(application, documents.getRoot());
+        return ast;
+    }
+
+    /**
+     * Compile the schemas found while parsing into a JAXB model.
+     *
+     * @return the model, or null if there are no schemas.
+     */
+    S2JJAXBModel bind() {
+        s2jModel = s2j.bind();
+        return s2jModel;
+    }
+
+    /**
+     * Generate the JAXB classes for the schemas, as done by {@link Wadl2Java}
+     * before any resource class is generated.
+     *
+     * @return the code model holding the JAXB classes.
+     */
+    JCodeModel generateSchemaClasses() {
+        if (s2jModel == null) {
+            codeModel = new JCodeModel();
+            return codeModel;
+        }
+        codeModel = s2jModel.generateCode(null, SCHEMA_ERRORS);
+        StringBuilder buf = new StringBuilder();
+        for (Iterator<JPackage> i = codeModel.packages(); i.hasNext(); ) {
+            JPackage genPkg = i.next();
+            if (genPkg.isDefined("ObjectFactory")) {
+                if (buf.length() > 0) {
+                    buf.append(':');
+                }
+                buf.append(genPkg.name());
+            }
+        }
+        generatedPackages = buf.toString();
+        return codeModel;
+    }
+
+    /**
+     * Generate the resource type interfaces and a class for each root
+     * resource.
+     *
+     * @return the code model holding the generated classes.
+     */
+    JCodeModel generate() throws JClassAlreadyExistsException {
+        JavaDocUtil javaDoc = new JavaDocUtil();
+        JPackage pkg = codeModel._package(PACKAGE);
+        for (ResourceTypeNode type : astBuilder.getInterfaceMap().values()) {
+            new JAXRS20ResourceClassGenerator(parameters, resolver, codeModel,
+                    pkg, generatedPackages, javaDoc).generateResourceTypeInterface(type);
+        }
+        for (ResourceNode r : ast.getResources()) {
+            new JAXRS20ResourceClassGenerator(parameters, resolver, codeModel,
+                    pkg, generatedPackages, javaDoc, r).generateEndpointClass(documents.getRoot(), r);
+        }
+        return codeModel;
+    }
+
+    /**
+     * Write out the source of every generated class, discarding the
+     * output.
+     *
+     * @return the number of bytes written.
+     */
+    long write() throws IOException {
+        CountingCodeWriter writer = new CountingCodeWriter();
+        codeModel.build(writer);
+        return writer.count;
+    }
+
+    /**
+     * Maps elements to the classes generated by JAXB.
+     */
+    private final Resolver resolver = new Resolver() {
+        public JType resolve(Object element) {
+            if (element instanceof QName && s2jModel != null) {
+                Mapping map = s2jModel.get((QName) element);
+                if (map != null) {
+                    return map.getType().getTypeClass();
+                }
+            }
+            return null;
+        }
+
+        public URI resolveURI(AbstractNode context, String path) {
+            return documents.getRoot().resolve(path);
+        }
+
+        public boolean isThereJsonMapping() {
+            return false;
+        }
+    };
+
+    /**
+     * Exposes the two halves of {@link WadlAstBuilder#buildAst(URI)}.
+     */
+    private static final class StagedAstBuilder extends WadlAstBuilder {
+
+        StagedAstBuilder(SchemaCallback schemaCallback) {
+            super(schemaCallback, QUIET);
+        }
+
+        Application parse(URI root) throws JAXBException, IOException {
+            return processDescription(root);
+        }
+
+        ApplicationNode build(Application a, URI root) throws InvalidWADLException {
+            return buildAst(a, root);
+        }
+    }
+
+    /**
+     * Counts the bytes of each file rather than writing it anywhere.
+     */
+    private static final class CountingCodeWriter extends CodeWriter {
+
+        private long count;
+
+        @Override
+        public OutputStream openBinary(JPackage pkg, String fileName) throws IOException {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    count++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    count += len;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
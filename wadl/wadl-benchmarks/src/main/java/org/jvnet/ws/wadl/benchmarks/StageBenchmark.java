@@ -0,0 +1,75 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The common set up of the benchmark for each stage of the pipeline. Each
+ * invocation gets a new {@link Pipeline} that has already been taken through
+ * the stages before the one being measured, so only that stage is timed.
+ * <p>
+ * The descriptions are generated ones of growing size and the shipped
+ * samples; select some with, for example,
+ * <code>java -jar target/benchmarks.jar -p description=synthetic-1000</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class StageBenchmark {
+
+    @Param({
+        Documents.SYNTHETIC + "100",
+        Documents.SYNTHETIC + "1000",
+        Documents.SYNTHETIC + "10000",
+        Documents.SYNTHETIC + "50000",
+        "YahooSearch.wadl"})
+    public String description;
+
+    Documents documents;
+    Pipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void loadDocuments() throws Exception {
+        documents = Documents.forDescription(description);
+        // Fail early if the description cannot be processed at all
+        new Pipeline(documents).run();
+    }
+
+    @Setup(Level.Invocation)
+    public void createPipeline() throws Exception {
+        pipeline = new Pipeline(documents);
+        prepare(pipeline);
+    }
+
+    /**
+     * Run the stages before the one being measured.
+     *
+     * @param pipeline a new pipeline.
+     * @throws Exception if a stage fails.
+     */
+    protected abstract void prepare(Pipeline pipeline) throws Exception;
+}
@@ -0,0 +1,35 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Times {@link com.sun.codemodel.JCodeModel#build(com.sun.codemodel.CodeWriter)},
+ * writing out the source of every generated class.
+ */
+public class WriteBenchmark extends StageBenchmark {
+
+    @Override
+    protected void prepare(Pipeline pipeline) throws Exception {
+        pipeline.parse();
+        pipeline.buildAst();
+        pipeline.bind();
+        pipeline.generateSchemaClasses();
+        pipeline.generate();
+    }
+
+    @Benchmark
+    public long write() throws Exception {
+        return pipeline.write();
+    }
+}
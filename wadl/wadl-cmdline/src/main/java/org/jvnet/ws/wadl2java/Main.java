@@ -19,8 +19,11 @@
 
 package org.jvnet.ws.wadl2java;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -29,6 +32,7 @@ import java.util.List;
 import javax.xml.bind.JAXBException;
 
 import org.jvnet.ws.wadl.ast.InvalidWADLException;
+import org.jvnet.ws.wadl.ast.WadlContextHolder;
 
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.writer.FileCodeWriter;
@@ -55,10 +59,28 @@ import com.sun.codemodel.writer.FileCodeWriter;
  * <dt><code>file.wadl</code></dt>
  * <dd>The WADL file to process.</dd>
  * </dl>
+ *
+ * <p>Alternatively <code>java ws.wadl2java.Main -daemon</code> keeps running
+ * and reads one job per line from standard input, each line holding the same
+ * arguments as above. Arguments containing spaces can be wrapped in double
+ * quotes. After each job a single line is written to standard output, either
+ * <code>OK</code> or <code>ERROR</code> followed by the reason. An empty line,
+ * <code>quit</code> or the end of the input stops the daemon. The JAXB, XJC
+ * and XSLT machinery stays loaded between jobs so only the first one pays
+ * the start up cost.</p>
  * @author mh124079
  */
 public class Main {
     
+    /** The code was generated. */
+    protected static final int SUCCESS = 0;
+    /** The arguments were incomplete, the usage message was printed. */
+    protected static final int USAGE = 1;
+    /** A file or directory named in the arguments doesn't exist. */
+    protected static final int INVALID_ARGUMENTS = 2;
+    /** Processing of the WADL file failed. */
+    protected static final int FAILED = 3;
+    
     /**
      * Print out the usage message
      */
@@ -71,6 +93,110 @@ public class Main {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+        if (args.length==1 && args[0].equals("-daemon")) {
+            try {
+                serve(new BufferedReader(new InputStreamReader(System.in)), System.out);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
+        
+        if (generate(args)==INVALID_ARGUMENTS) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Process jobs, one per line, until an empty line, <code>quit</code> or
+     * the end of the input.
+     * @param in the source of the jobs.
+     * @param out where the result of each job is written.
+     * @throws IOException if the jobs cannot be read.
+     */
+    protected static void serve(BufferedReader in, PrintStream out) throws IOException {
+        // Create the shared WADL context up front so the first job is as
+        // quick as the rest, a failure here will be reported by that job
+        try {
+            WadlContextHolder.getContext();
+        } catch (JAXBException ex) {
+            // Ignore
+        }
+        System.err.println(Wadl2JavaMessages.DAEMON_READY());
+        String line;
+        while ((line = in.readLine())!=null) {
+            line = line.trim();
+            if (line.length()==0 || line.equals("quit")) {
+                break;
+            }
+            
+            int status;
+            try {
+                status = generate(splitArguments(line));
+            } catch (RuntimeException ex) {
+                // Don't let a bad job bring down the daemon
+                ex.printStackTrace();
+                status = FAILED;
+            }
+            
+            switch (status) {
+                case SUCCESS:
+                    out.println("OK");
+                    break;
+                case USAGE:
+                    out.println("ERROR usage");
+                    break;
+                case INVALID_ARGUMENTS:
+                    out.println("ERROR invalid arguments");
+                    break;
+                default:
+                    out.println("ERROR processing failed");
+            }
+            out.flush();
+        }
+    }
+    
+    /**
+     * Split a job line into arguments on white space, honouring double quotes.
+     * @param line the job line.
+     * @return the arguments.
+     */
+    protected static String[] splitArguments(String line) {
+        List<String> arguments = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean inArgument = false;
+        for (int i=0; i<line.length(); i++) {
+            char c = line.charAt(i);
+            if (c=='"') {
+                quoted = !quoted;
+                inArgument = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inArgument) {
+                    arguments.add(current.toString());
+                    current.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                current.append(c);
+                inArgument = true;
+            }
+        }
+        if (inArgument) {
+            arguments.add(current.toString());
+        }
+        return arguments.toArray(new String[arguments.size()]);
+    }
+    
+    /**
+     * Generate code for a single WADL file.
+     * @param args the command line arguments
+     * @return {@link #SUCCESS}, {@link #USAGE} if the usage message was
+     *   printed, {@link #INVALID_ARGUMENTS} if a file or directory doesn't
+     *   exist or {@link #FAILED} if processing failed.
+     */
+    protected static int generate(String[] args) {
         try {
             int i=0;
             File outputDir = null;
@@ -101,12 +227,12 @@ public class Main {
                 } else {
                     System.err.println(Wadl2JavaMessages.UNKNOWN_OPTION(args[i]));
                     printUsage();
-                    return;
+                    return USAGE;
                 }
             }
             if (i > args.length-1 || outputDir==null || pkg==null) {
                 printUsage();
-                return;
+                return USAGE;
             }
             URI wadlDesc = new URI(args[args.length-1]);
             if (wadlDesc.getScheme()==null || wadlDesc.getScheme().equals("file")) {
@@ -115,18 +241,18 @@ public class Main {
                 if (!wadlFile.exists() || !wadlFile.isFile()) {
                     System.err.println(Wadl2JavaMessages.NOT_A_FILE(wadlFile.getPath()));
                     printUsage();
-                    System.exit(1);
+                    return INVALID_ARGUMENTS;
                 }
                 if (!outputDir.exists() || !outputDir.isDirectory()) {
                     System.err.println(Wadl2JavaMessages.NOT_A_DIRECTORY(outputDir.getPath()));
                     printUsage();
-                    System.exit(1);
+                    return INVALID_ARGUMENTS;
                 }
                 for (File customization: customizations) {
                     if (!customization.exists() || !customization.isFile()) {
                         System.err.println(Wadl2JavaMessages.NOT_A_FILE(customization.getPath()));
                         printUsage();
-                        System.exit(1);
+                        return INVALID_ARGUMENTS;
                     }
                 }
                 wadlDesc = wadlFile.toURI();
@@ -141,6 +267,7 @@ public class Main {
                 .setGenerationStyle(generationStyle));
             
             w.process(wadlDesc);
+            return SUCCESS;
         } catch (InvalidWADLException ex) {
             ex.printStackTrace();
         } catch (URISyntaxException ex) {
@@ -152,6 +279,7 @@ public class Main {
         } catch (JClassAlreadyExistsException ex) {
             ex.printStackTrace();
         }
+        return FAILED;
     }
     
 }
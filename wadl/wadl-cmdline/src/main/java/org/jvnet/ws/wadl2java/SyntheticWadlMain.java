@@ -0,0 +1,140 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.jvnet.ws.wadl2java;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.jvnet.ws.wadl.util.SyntheticWadl;
+
+/**
+ * Command line support for writing made up WADL files of any size for
+ * benchmarks and soak tests, see {@link SyntheticWadl}.
+ *
+ * <p>Usage:</p>
+ *
+ * <pre>java org.jvnet.ws.wadl2java.SyntheticWadlMain -o directory -r 10000 -schema included big.wadl</pre>
+ *
+ * <p>where:</p>
+ *
+ * <dl>
+ * <dt><code>-o directory</code></dt>
+ * <dd>The directory to which the description, and the schema if it is
+ * included, will be written. It must exist.</dd>
+ * <dt><code>-r resources</code></dt>
+ * <dd>The number of resources, defaults to 100</dd>
+ * <dt><code>-d depth</code></dt>
+ * <dd>The depth of each tree of resources, defaults to 3</dd>
+ * <dt><code>-t resourceTypes</code></dt>
+ * <dd>The number of resource types, defaults to none</dd>
+ * <dt><code>-sp sharedParams</code></dt>
+ * <dd>The number of query parameters referred to by href, defaults to none</dd>
+ * <dt><code>-e elements</code></dt>
+ * <dd>The number of elements in the schema, defaults to 10</dd>
+ * <dt><code>-h</code></dt>
+ * <dd>Define methods and representations once and refer to them by href</dd>
+ * <dt><code>-schema none|embedded|included</code></dt>
+ * <dd>Where the schema goes, defaults to embedded</dd>
+ * <dt><code>file.wadl</code></dt>
+ * <dd>The file name of the description.</dd>
+ * </dl>
+ */
+public class SyntheticWadlMain extends Main {
+
+    /**
+     * Entry point for the command line synthetic WADL tool.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (write(args)!=SUCCESS) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write a single description.
+     * @param args the command line arguments
+     * @return {@link #SUCCESS}, {@link #USAGE} if the usage message was
+     *   printed, {@link #INVALID_ARGUMENTS} if the directory doesn't exist or
+     *   {@link #FAILED} if the files could not be written.
+     */
+    protected static int write(String[] args) {
+        SyntheticWadl generator = new SyntheticWadl();
+        File outputDir = null;
+        int i=0;
+        try {
+            while (i<args.length-1) {
+                if (args[i].equals("-o")) {
+                    outputDir = new File(args[i+1]);
+                    i+=2;
+                } else if (args[i].equals("-r")) {
+                    generator.setResources(Integer.parseInt(args[i+1]));
+                    i+=2;
+                } else if (args[i].equals("-d")) {
+                    generator.setDepth(Integer.parseInt(args[i+1]));
+                    i+=2;
+                } else if (args[i].equals("-t")) {
+                    generator.setResourceTypes(Integer.parseInt(args[i+1]));
+                    i+=2;
+                } else if (args[i].equals("-sp")) {
+                    generator.setSharedParams(Integer.parseInt(args[i+1]));
+                    i+=2;
+                } else if (args[i].equals("-e")) {
+                    generator.setElements(Integer.parseInt(args[i+1]));
+                    i+=2;
+                } else if (args[i].equals("-h")) {
+                    generator.setHrefs(true);
+                    i+=1;
+                } else if (args[i].equals("-schema")) {
+                    generator.setSchemaStyle(SyntheticWadl.SchemaStyle.valueOf(
+                            args[i+1].toUpperCase(Locale.ENGLISH)));
+                    i+=2;
+                } else {
+                    System.err.println(Wadl2JavaMessages.UNKNOWN_OPTION(args[i]));
+                    printSyntheticUsage();
+                    return USAGE;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            // Includes a number that cannot be parsed
+            System.err.println(ex.getMessage());
+            printSyntheticUsage();
+            return USAGE;
+        }
+        if (i > args.length-1 || outputDir==null) {
+            printSyntheticUsage();
+            return USAGE;
+        }
+        if (!outputDir.exists() || !outputDir.isDirectory()) {
+            System.err.println(Wadl2JavaMessages.NOT_A_DIRECTORY(outputDir.getPath()));
+            printSyntheticUsage();
+            return INVALID_ARGUMENTS;
+        }
+
+        try {
+            generator.write(outputDir, args[args.length-1]);
+            return SUCCESS;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return FAILED;
+    }
+
+    /**
+     * Print out the usage message
+     */
+    protected static void printSyntheticUsage() {
+        System.err.println(Wadl2JavaMessages.SYNTHETIC_USAGE());
+    }
+}
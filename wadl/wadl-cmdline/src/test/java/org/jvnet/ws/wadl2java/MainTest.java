@@ -0,0 +1,135 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl2java;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Check the job handling of the daemon mode of {@link Main}.
+ */
+public class MainTest {
+
+    private static final String WADL =
+            "<application xmlns=\"http://wadl.dev.java.net/2009/02\">\n"
+            + "  <resources base=\"http://example.com/api/\">\n"
+            + "    <resource path=\"items\">\n"
+            + "      <method name=\"GET\" id=\"listItems\">\n"
+            + "        <response status=\"200\">\n"
+            + "          <representation mediaType=\"text/plain\"/>\n"
+            + "        </response>\n"
+            + "      </method>\n"
+            + "    </resource>\n"
+            + "  </resources>\n"
+            + "</application>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String wadl;
+    private File target;
+
+    @Before
+    public void createDescription() throws IOException {
+        File file = new File(folder.getRoot(), "simple.wadl");
+        write(file, WADL);
+        wadl = file.toURI().toString();
+        target = folder.newFolder("gen src");
+    }
+
+    /**
+     * Each job gets a single line in reply, whether it worked or not, and a
+     * failed job doesn't stop the next one.
+     */
+    @Test
+    public void testServe() throws IOException {
+        File broken = new File(folder.getRoot(), "broken.wadl");
+        write(broken, "<application");
+
+        String replies = serve(
+                "-p test -o \"" + target.getPath() + "\" " + wadl + "\n"
+                + "-p test\n"
+                + "-p test -o \"" + target.getPath() + "\" missing.wadl\n"
+                + "-p test -o \"" + target.getPath() + "\" " + broken.toURI() + "\n"
+                + "  -p test -o \"" + target.getPath() + "\" " + wadl + "  \n"
+                + "quit\n");
+        assertEquals(lines(
+                "OK",
+                "ERROR usage",
+                "ERROR invalid arguments",
+                "ERROR processing failed",
+                "OK"), replies);
+        assertTrue("Generated some code", new File(target, "test").isDirectory());
+    }
+
+    /**
+     * Jobs after an empty line or <code>quit</code> are not processed.
+     */
+    @Test
+    public void testServeStops() throws IOException {
+        assertEquals(lines("ERROR usage"), serve("-p test\n\n-p test\n"));
+        assertEquals(lines("ERROR usage"), serve("-p test\nquit\n-p test\n"));
+        assertEquals(lines("ERROR usage", "ERROR usage"), serve("-p test\n-p test"));
+        assertEquals("", serve(""));
+    }
+
+    /**
+     * Arguments are split on white space, apart from in double quotes.
+     */
+    @Test
+    public void testSplitArguments() {
+        assertArrayEquals(new String[] {"-p", "test", "-o", "gen src", "a.wadl"},
+                Main.splitArguments("-p  test\t-o \"gen src\" a.wadl"));
+        assertArrayEquals(new String[] {"-o", "gen src/out", ""},
+                Main.splitArguments("-o gen\" src\"/out \"\""));
+        assertArrayEquals(new String[0], Main.splitArguments("   "));
+    }
+
+    private static String serve(String input) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bos, true, "UTF-8");
+        Main.serve(new BufferedReader(new StringReader(input)), out);
+        return bos.toString("UTF-8");
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.getProperty("line.separator"));
+        }
+        return sb.toString();
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(text.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+}
@@ -29,6 +29,8 @@ public class ApplicationNode  extends AbstractNode {
     
     private Application application;
     private List<ResourceNode> resources;
+    private volatile ResourceIndex resourceIndex;
+    private Locator location;
     
     public ApplicationNode(Application application, List<ResourceNode> resources) {
         this.application = application;
@@ -41,12 +43,57 @@ public class ApplicationNode  extends AbstractNode {
         return resources;
     }
     
+    /**
+     * Get an index that maps a request path to the resource that serves it,
+     * built from the resource tree the first time it is asked for.
+     * 
+     * @return the routing index for the resources of this application.
+     */
+    public ResourceIndex getResourceIndex() {
+        ResourceIndex index = resourceIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = resourceIndex;
+                if (index == null) {
+                    index = new ResourceIndex(resources);
+                    resourceIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+    
     /**
      * @return The location of the node.
      */
     @Override
     public Locator getLocation() {
-        return application.sourceLocation();
+        return application == null ? location : application.sourceLocation();
+    }
+    
+    /**
+     * Reduce the memory used by this tree so that it can be kept for a long
+     * time. Empty lists are replaced by a shared instance and the others by
+     * unmodifiable copies of the right size, and names, media types and
+     * status code lists that repeat are shared. Once compacted the tree can
+     * no longer be modified, so this should only be called once it is
+     * complete, typically straight after {@link WadlAstBuilder#buildAst}.
+     * 
+     * @param dropSources if true the nodes also let go of the JAXB elements
+     *   they were built from, keeping just the values and locations they need,
+     *   which allows the unmarshalled documents to be garbage collected.
+     * @return {@code this}.
+     */
+    public ApplicationNode compact(boolean dropSources) {
+        AstCompactor compactor = new AstCompactor(dropSources);
+        for (ResourceNode node : resources) {
+            node.compact(compactor);
+        }
+        if (dropSources && application != null) {
+            location = application.sourceLocation();
+            application = null;
+        }
+        return this;
     }
     
     
@@ -0,0 +1,148 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.MultivaluedMap;
+import org.jvnet.ws.wadl.Param;
+import org.jvnet.ws.wadl.Representation;
+import org.jvnet.ws.wadl.util.AbstractMultivaluedMap;
+
+/**
+ * Does the work of {@link ApplicationNode#compact(boolean)}, replacing the
+ * growable lists of each node with the smallest unmodifiable equivalent and
+ * interning the strings that are repeated across nodes and documents.
+ */
+final class AstCompactor {
+
+    @SuppressWarnings("rawtypes")
+    private static final MultivaluedMap EMPTY_MAP =
+            new AbstractMultivaluedMap(Collections.emptyMap()) {};
+
+    private final boolean dropSources;
+    private final IdentityHashMap<Object, Boolean> compacted = new IdentityHashMap<Object, Boolean>();
+    private final Map<List<Long>, List<Long>> statusLists = new HashMap<List<Long>, List<Long>>();
+
+    /**
+     * @param dropSources whether nodes should let go of the JAXB elements
+     *   they were built from.
+     */
+    AstCompactor(boolean dropSources) {
+        this.dropSources = dropSources;
+    }
+
+    /**
+     * @return whether nodes should let go of the JAXB elements they were
+     *   built from.
+     */
+    boolean isDropSources() {
+        return dropSources;
+    }
+
+    /**
+     * Nodes such as those from resource types can be reached more than once.
+     * @param node the node about to be compacted.
+     * @return true the first time a node is seen, false if it has already
+     *   been compacted.
+     */
+    boolean firstVisit(Object node) {
+        return compacted.put(node, Boolean.TRUE) == null;
+    }
+
+    /**
+     * @return the interned string, or null.
+     */
+    String string(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    /**
+     * @return an unmodifiable list with the same content, shared if empty.
+     */
+    <T> List<T> list(List<T> list) {
+        if (list == null || list.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (list.size() == 1) {
+            return Collections.singletonList(list.get(0));
+        }
+        return Collections.unmodifiableList(new ArrayList<T>(list));
+    }
+
+    /**
+     * Compact a list of parameters, interning the names as well.
+     * @return an unmodifiable list with the same content, shared if empty.
+     */
+    List<Param> params(List<Param> params) {
+        if (params != null) {
+            for (Param p : params) {
+                if (firstVisit(p)) {
+                    p.setName(string(p.getName()));
+                }
+            }
+        }
+        return list(params);
+    }
+
+    /**
+     * Compact a map keyed by status code lists, sharing equal keys between
+     * methods.
+     * @return an unmodifiable map with the same content, shared if empty.
+     */
+    @SuppressWarnings("unchecked")
+    <V> MultivaluedMap<List<Long>, V> statusMap(MultivaluedMap<List<Long>, V> map) {
+        if (map == null || map.isEmpty()) {
+            return EMPTY_MAP;
+        }
+        Map<List<Long>, List<V>> store = new LinkedHashMap<List<Long>, List<V>>(map.size() * 2);
+        for (Map.Entry<List<Long>, List<V>> e : map.entrySet()) {
+            List<Long> key = statusLists.get(e.getKey());
+            if (key == null) {
+                key = list(e.getKey());
+                statusLists.put(key, key);
+            }
+            store.put(key, list(e.getValue()));
+        }
+        return new AbstractMultivaluedMap<List<Long>, V>(Collections.unmodifiableMap(store)) {};
+    }
+
+    /**
+     * Copy the parts of a representation or fault used by the AST, leaving
+     * behind any extension elements and the rest of the JAXB tree.
+     * @return the copy.
+     */
+    Representation representation(Representation r) {
+        Representation copy = new Representation();
+        copy.setId(r.getId());
+        copy.setElement(r.getElement());
+        copy.setMediaType(string(r.getMediaType()));
+        if (!r.getProfile().isEmpty()) {
+            copy.getProfile().addAll(r.getProfile());
+        }
+        if (!r.getParam().isEmpty()) {
+            copy.getParam().addAll(r.getParam());
+        }
+        if (!r.getDoc().isEmpty()) {
+            copy.getDoc().addAll(r.getDoc());
+        }
+        if (!r.getOtherAttributes().isEmpty()) {
+            copy.getOtherAttributes().putAll(r.getOtherAttributes());
+        }
+        return copy;
+    }
+}
@@ -13,7 +13,9 @@
 package org.jvnet.ws.wadl.ast;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.jvnet.ws.wadl.util.MessageListener;
@@ -21,16 +23,21 @@ import org.jvnet.ws.wadl.util.MessageListener;
 
 /**
  * Maintains a map of file+ref to element.
+ * <p>
+ * The elements are held in two levels, a map from the URI of each document
+ * to a table of the identified elements in that document, so that resolving
+ * a href only looks up the document and then the fragment in place, without
+ * building a combined key each time.
  * @author mh124079
  */
 public class ElementResolver {
     
-    private Map<String, Object> map;
+    private Map<URI, RegionHashMap<Object>> documents;
     private MessageListener messageListener;
     
     public ElementResolver(MessageListener messageListener) {
         this.messageListener = messageListener;
-        map = new HashMap<String, Object>();
+        documents = new HashMap<URI, RegionHashMap<Object>>();
     }
     
     /**
@@ -40,7 +47,11 @@ public class ElementResolver {
      * @return the corresponding element or null if not found.
      */
     public Object get(String ref) {
-        return map.get(ref);
+        int hash = ref.lastIndexOf('#');
+        if (hash == -1)
+            return null;
+        RegionHashMap<Object> ids = document(URI.create(ref.substring(0, hash)));
+        return ids == null ? null : ids.get(ref, hash + 1, ref.length());
     }
     
     /**
@@ -53,11 +64,49 @@ public class ElementResolver {
      * @param object the original referring object.
      * @throws InvalidWADLException when WADL is invalid and cannot be processed.
      */
-    @SuppressWarnings("unchecked")
     public <T> T resolve(URI file, String href, T object) throws InvalidWADLException {
-        Object o = null;
-        String id = file.toString()+href.substring(href.indexOf('#'));
-        o = map.get(id);
+        return resolve(document(file), href, object);
+    }
+    
+    /**
+     * Resolve several hrefs from the same document, each of which may be
+     * to an element in that document or in another one.
+     *
+     * @param file the URI of the file that contains the references.
+     * @param hrefs the references to resolve.
+     * @param object the referring object, used for the expected type and
+     * to locate any error.
+     * @return the resolved objects, in the same order as the references.
+     * @throws InvalidWADLException when WADL is invalid and cannot be processed.
+     */
+    public <T> List<T> resolveAll(URI file, List<String> hrefs, T object) throws InvalidWADLException {
+        List<T> resolved = new ArrayList<T>(hrefs.size());
+        RegionHashMap<Object> local = document(file);
+        for (String href : hrefs) {
+            RegionHashMap<Object> ids = href.startsWith("#") ? local 
+                    : document(WadlAstBuilder.getReferencedFile(file, href));
+            resolved.add(resolve(ids, href, object));
+        }
+        return resolved;
+    }
+    
+    /**
+     * @return the identified elements of a document, or null if it has none.
+     */
+    private RegionHashMap<Object> document(URI file) {
+        // Documents are added with a normalized URI, which is usually the
+        // same as the one used to refer to them
+        RegionHashMap<Object> ids = documents.get(file);
+        if (ids == null) {
+            ids = documents.get(WadlAstBuilder.normalize(file));
+        }
+        return ids;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T resolve(RegionHashMap<Object> ids, String href, T object) throws InvalidWADLException {
+        int hash = href.indexOf('#');
+        Object o = ids == null || hash == -1 ? null : ids.get(href, hash + 1, href.length());
         if (o == null) {
             throw WadlAstBuilder.messageStringFromObject(AstMessages.SKIPPING_REFERENCE(href), object);
         }
@@ -73,15 +122,21 @@ public class ElementResolver {
      * @param file the URI of the file that contains the element.
      * @param id the id of the element, may be null.
      * @param o the element.
-     * @return the unique identifier of the element or null if the element did
-     * not contain an identifier.
+     * @return the unique identifier of the element, built from the normalized
+     * URI of the file, or null if the element did not contain an identifier.
      */
     public String addReference(URI file, String id, Object o) {
         String uniqueId = null;
         if (id != null && id.length()>0) {
             // if the element has an ID then add it to the ref map
-            uniqueId = file.toString()+"#"+id;
-            map.put(uniqueId, o);
+            URI normalized = WadlAstBuilder.normalize(file);
+            RegionHashMap<Object> ids = documents.get(normalized);
+            if (ids == null) {
+                ids = new RegionHashMap<Object>();
+                documents.put(normalized, ids);
+            }
+            ids.put(id, o);
+            uniqueId = normalized.toString()+"#"+id;
         }
         return uniqueId;
     }
@@ -36,6 +36,7 @@ public class FaultNode  extends AbstractNode {
      
     private Representation fault;
     String className;
+    private Locator location;
     
     /**
      * Creates a new instance of FaultNode.
@@ -115,7 +116,26 @@ public class FaultNode  extends AbstractNode {
      */
     @Override
     public Locator getLocation() {
-        return fault.sourceLocation();
+        return location == null ? fault.sourceLocation() : location;
+    }
+    
+    /**
+     * Intern the media type and class name and, if required, replace the
+     * fault with a copy that holds just what is needed by the AST.
+     * @param compactor the compactor doing the work
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        className = compactor.string(className);
+        if (compactor.isDropSources() && location == null) {
+            location = fault.sourceLocation();
+            fault = compactor.representation(fault);
+        }
+        else {
+            fault.setMediaType(compactor.string(fault.getMediaType()));
+        }
+        compactor.params(fault.getParam());
     }
     
 }
@@ -48,6 +48,9 @@ public class MethodNode extends AbstractNode {
     private MultivaluedMap<List<Long>, FaultNode> faults;
             
     private Method method;
+    private String id;
+    private List<Doc> doc;
+    private Locator location;
     
     /**
      * Creates a new instance of MethodNode and attach it to a resource
@@ -110,7 +113,7 @@ public class MethodNode extends AbstractNode {
      * @return the method name
      */
     public String getId() {
-        return method.getId();
+        return method == null ? id : method.getId();
     }
 
     /**
@@ -227,7 +230,7 @@ public class MethodNode extends AbstractNode {
      * @return documentation list, one item per language
      */
     public List<Doc> getDoc() {
-        return method.getDoc();
+        return method == null ? doc : method.getDoc();
     }
 
     /**
@@ -235,7 +238,43 @@ public class MethodNode extends AbstractNode {
      */
     @Override
     public Locator getLocation() {
-        return method.sourceLocation();
+        return method == null ? location : method.sourceLocation();
+    }
+    
+    /**
+     * Compact this method and its representations.
+     * @param compactor the compactor doing the work
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        name = compactor.string(name);
+        queryParams = compactor.params(queryParams);
+        headerParams = compactor.params(headerParams);
+        matrixParams = compactor.params(matrixParams);
+        supportedInputs = compactor.list(supportedInputs);
+        supportedOutputs = compactor.statusMap(supportedOutputs);
+        faults = compactor.statusMap(faults);
+        if (compactor.isDropSources() && method != null) {
+            id = method.getId();
+            doc = compactor.list(method.getDoc());
+            location = method.sourceLocation();
+            method = null;
+        }
+        
+        for (RepresentationNode node : supportedInputs) {
+            node.compact(compactor);
+        }
+        for (List<RepresentationNode> nodeList : supportedOutputs.values()) {
+            for (RepresentationNode node : nodeList) {
+                node.compact(compactor);
+            }
+        }
+        for (List<FaultNode> nodeList : faults.values()) {
+            for (FaultNode node : nodeList) {
+                node.compact(compactor);
+            }
+        }
     }
     
     /**
@@ -25,13 +25,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.jvnet.ws.wadl.Param;
 import org.jvnet.ws.wadl.ParamStyle;
 import org.jvnet.ws.wadl.Resource;
 import org.jvnet.ws.wadl.ResourceType;
+import org.jvnet.ws.wadl.util.PercentEncoding;
 
 /**
  * Represents a segment of a URI with zero or more embedded parameters as found
@@ -43,7 +42,9 @@ import org.jvnet.ws.wadl.ResourceType;
 public class PathSegment {
     
     /**
-     * A regular expression to extra out templates from a URI
+     * A regular expression to extra out templates from a URI, templates are
+     * now parsed with {@link UriTemplateTokenizer} which also copes with
+     * nested braces in the regular expression of a parameter
      */
     public static final String PARAM_WITH_REGEX_PATTERN = "(\\{(\\w*)(\\s*:.*?)?\\})";
     /**
@@ -51,7 +52,10 @@ public class PathSegment {
      */
     public static final String PARAM_WITH_REGEX_NAME = "$2";
     
+    private static final String[] NO_LITERALS = { "" };
+    
     private String template;
+    private String[] literals = NO_LITERALS;
     private List<Param> templateParameters;
     private List<Param> matrixParameters;
     private List<Param> queryParameters;
@@ -82,15 +86,22 @@ public class PathSegment {
         this.headerParameters = new ArrayList<Param>();
 
         // parse template for embedded parameters
-        Pattern embeddedParamPattern = Pattern.compile("\\{.*?\\}");
-        Matcher matcher = embeddedParamPattern.matcher(template);
-        while (matcher.find()) {
-            String paramName = matcher.group();
-            paramName = paramName.substring(1,paramName.length()-1);
+        List<String> literalList = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+        while (tokenizer.next()) {
+            if (!tokenizer.isParameter()) {
+                literal.append(tokenizer.getLiteral());
+                continue;
+            }
+            literalList.add(literal.toString());
+            literal.setLength(0);
             Param embeddedParam = new Param();
-            embeddedParam.setName(paramName);
+            embeddedParam.setName(tokenizer.getName());
             templateParameters.add(embeddedParam);
         }
+        literalList.add(literal.toString());
+        literals = literalList.toArray(new String[literalList.size()]);
         
         if (matrixParameters != null)  {
             for (String matrixParam: matrixParameters) {
@@ -134,18 +145,21 @@ public class PathSegment {
         }
         
         // parse template for embedded parameters
-        Pattern embeddedParamPattern = Pattern.compile("\\{.*?\\}");
-        Matcher matcher = embeddedParamPattern.matcher(template);
-        while (matcher.find()) {
-            String paramText = matcher.group();
+        List<String> literalList = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+        while (tokenizer.next()) {
+            if (!tokenizer.isParameter()) {
+                literal.append(tokenizer.getLiteral());
+                continue;
+            }
+            literalList.add(literal.toString());
+            literal.setLength(0);
             
             // It is not as simple as just removing the braces, the
-            // parameter might also have a regular expression in it, we need
-            // to remove of this for the purposes of code generation
-            //
-            //paramName = paramName.substring(1,paramName.length()-1);
-            String paramName = paramText.replaceAll(
-                PARAM_WITH_REGEX_PATTERN, PARAM_WITH_REGEX_NAME);
+            // parameter might also have a regular expression in it, the
+            // tokenizer removes this for the purposes of code generation
+            String paramName = tokenizer.getName();
             
             // if embedded parameter is annotated by child param then use that
             // otherwise create a new empty param for it
@@ -157,6 +171,8 @@ public class PathSegment {
                 templateParameters.add(embeddedParam);
             }
         }
+        literalList.add(literal.toString());
+        literals = literalList.toArray(new String[literalList.size()]);
     }
     
     /**
@@ -254,6 +270,21 @@ public class PathSegment {
         return headerParameters;
     }
     
+    /**
+     * Replace the parameter lists with unmodifiable compact copies.
+     *
+     * @param compactor the compactor doing the work.
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        template = compactor.string(template);
+        templateParameters = compactor.params(templateParameters);
+        matrixParameters = compactor.params(matrixParameters);
+        queryParameters = compactor.params(queryParameters);
+        headerParameters = compactor.params(headerParameters);
+    }
+    
     /**
      * Merges the supplied parameter values into the path segment template and returns
      * the resulting path segment. E.g. if the template is "{p1}/{p2}" with a matrix
@@ -264,50 +295,78 @@ public class PathSegment {
      * @param parameterValues a map of parameter names to values. Values can be of any class, evaluate uses
      * the object's toString method to obtain the stringified value.
      * @return the path segment resulting from inserting the parameter values into the template.
+     * @see #expand(Map, StringBuilder, boolean)
      */
     public String evaluate(Map<String, Object> parameterValues) {
-        String retVal = template;
-        if (parameterValues==null)
-            parameterValues = new HashMap<String, Object>();
-        for (Param param: templateParameters) {
-            String paramName = param.getName();
-            String paramValue = "";
-            
-            if (parameterValues.containsKey(paramName))
-                paramValue = parameterValues.get(paramName).toString();
-            else if (param.isRequired() == Boolean.TRUE)
+        return expand(parameterValues, new StringBuilder(), false).toString();
+    }
+    
+    /**
+     * Appends the path segment resulting from inserting the parameter values
+     * into the template to a buffer, as for {@link #evaluate(Map)}. The
+     * template is split into literal text and parameter slots when the
+     * segment is created so the values are inserted in a single pass, and
+     * are never interpreted as regular expression replacement text.
+     * The caller may re-use the same buffer for many calls.
+     *
+     * @param parameterValues a map of parameter names to values, may be null.
+     * @param buffer the buffer to append to.
+     * @param encode whether to percent encode the values of template and
+     * matrix parameters, leaving only those characters that are safe in a path
+     * segment or a matrix parameter value.
+     * @return the buffer.
+     * @throws IllegalArgumentException if a required parameter has no value.
+     */
+    public StringBuilder expand(Map<String, ?> parameterValues, StringBuilder buffer, boolean encode) {
+        int slots = Math.min(templateParameters.size(), literals.length - 1);
+        for (int i = 0; i < slots; i++) {
+            Param param = templateParameters.get(i);
+            Object paramValue = parameterValues == null ? null : parameterValues.get(param.getName());
+            if (paramValue == null && param.isRequired() == Boolean.TRUE)
                 throw new IllegalArgumentException(
-                    AstMessages.TEMPLATE_VALUE_MISSING(paramName));
-            retVal = retVal.replaceAll("\\{"+paramName+"\\}", 
-                paramValue);
+                    AstMessages.TEMPLATE_VALUE_MISSING(param.getName()));
+            buffer.append(literals[i]);
+            if (paramValue != null)
+                append(buffer, paramValue.toString(), encode);
         }
-        StringBuilder buf = new StringBuilder(retVal);
+        buffer.append(literals[slots]);
+        
         for (Param param: matrixParameters) {
             String paramName = param.getName();
-            Object paramObject = null;
+            Object paramObject = parameterValues == null ? null : parameterValues.get(paramName);
             
-            if (parameterValues.containsKey(paramName)) {
-                paramObject = parameterValues.get(paramName);
-            } else if (param.isRequired()  == Boolean.TRUE)
-                throw new IllegalArgumentException(
-                    AstMessages.MATRIX_VALUE_MISSING(paramName));
-
-            if (paramObject==null)
+            if (paramObject == null) {
+                if (param.isRequired() == Boolean.TRUE)
+                    throw new IllegalArgumentException(
+                        AstMessages.MATRIX_VALUE_MISSING(paramName));
                 continue;
+            }
             if (paramObject instanceof Boolean) {
                 Boolean b = (Boolean)paramObject;
                 if (b) {
-                    buf.append(';');
-                    buf.append(paramName);
+                    buffer.append(';');
+                    buffer.append(paramName);
                 }
             }
             else {
-                buf.append(';');
-                buf.append(paramName);
-                buf.append('=');
-                buf.append(String.valueOf(paramObject));
+                buffer.append(';');
+                buffer.append(paramName);
+                buffer.append('=');
+                append(buffer, String.valueOf(paramObject), encode);
             }
         }
-        return buf.toString();
+        return buffer;
+    }
+    
+    /**
+     * Append a value, percent encoded with {@link PercentEncoding} if required.
+     */
+    private static void append(StringBuilder buffer, String value, boolean encode) {
+        if (encode) {
+            PercentEncoding.append(buffer, value);
+        }
+        else {
+            buffer.append(value);
+        }
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+/**
+ * An open addressing hash table with string keys that can be queried with a
+ * region of a larger string, such as the fragment of a href or one segment
+ * of a path, so that the caller doesn't have to create a substring for each
+ * lookup. Not thread safe while it is being filled, but safe to read from
+ * several threads once it is complete.
+ *
+ * @param <V> the type of the values.
+ */
+final class RegionHashMap<V> {
+
+    private String[] keys = new String[8];
+    private Object[] values = new Object[8];
+    private int size;
+
+    /**
+     * @param key the key.
+     * @return the value for the key, or null if there isn't one.
+     */
+    V get(String key) {
+        return get(key, 0, key.length());
+    }
+
+    /**
+     * @param text the text that contains the key.
+     * @param start the offset of the key in the text.
+     * @param end the offset just after the end of the key.
+     * @return the value for the key, or null if there isn't one.
+     */
+    @SuppressWarnings("unchecked")
+    V get(String text, int start, int end) {
+        int length = end - start;
+        int mask = keys.length - 1;
+        for (int i = hash(text, start, end) & mask; ; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) {
+                return null;
+            }
+            if (key.length() == length && key.regionMatches(0, text, start, length)) {
+                return (V) values[i];
+            }
+        }
+    }
+
+    /**
+     * Add or replace the value for a key.
+     * @param key the key.
+     * @param value the value.
+     */
+    void put(String key, V value) {
+        int mask = keys.length - 1;
+        int i = hash(key, 0, key.length()) & mask;
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+            put(key, value);
+            return;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index an index between 0 and the capacity of the table.
+     * @return the value in the slot, or null if it is empty; allows the
+     *   values to be visited without creating an iterator.
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * @return the number of slots in the table.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        size = 0;
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = hash(oldKeys[j], 0, oldKeys[j].length()) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+                size++;
+            }
+        }
+    }
+
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -37,6 +37,7 @@ import org.xml.sax.Locator;
 public class RepresentationNode extends AbstractNode {
     
     Representation rep;
+    private Locator location;
     
     /**
      * Creates a new instance of RepresentationNode.
@@ -122,7 +123,26 @@ public class RepresentationNode extends AbstractNode {
      */
     @Override
     public Locator getLocation() {
-        return rep.sourceLocation();
+        return location == null ? rep.sourceLocation() : location;
+    }
+    
+    /**
+     * Intern the media type and, if required, replace the representation
+     * with a copy that holds just what is needed by the AST.
+     *
+     * @param compactor the compactor doing the work.
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        if (compactor.isDropSources() && location == null) {
+            location = rep.sourceLocation();
+            rep = compactor.representation(rep);
+        }
+        else {
+            rep.setMediaType(compactor.string(rep.getMediaType()));
+        }
+        compactor.params(rep.getParam());
     }
     
     /**
@@ -0,0 +1,344 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps a request path to the {@link ResourceNode} that serves it, without
+ * walking the resource tree.
+ * <p>
+ * The index is a trie with one level per <code>/</code> separated segment of
+ * the path. Literal segments are found with a hash lookup directly on the
+ * region of the request path, so a path made up only of literal segments is
+ * matched without creating any objects. Segments that contain template
+ * parameters are only tried when no literal segment leads to a resource,
+ * most specific first, with the order used by JAX-RS: the most literal
+ * characters, then the most parameters, then the most parameters with a
+ * regular expression. The regular expression of a parameter is applied to
+ * a single segment of the path.
+ * <p>
+ * Paths are relative to the base of the <code>resources</code> element, a
+ * leading or trailing <code>/</code> is ignored and the query string must
+ * already have been removed. Where two resources have the same path the
+ * first one in document order wins. The index is immutable and so may be
+ * shared by several threads.
+ *
+ * @see ApplicationNode#getResourceIndex()
+ */
+public class ResourceIndex {
+
+    private final Node root = new Node();
+
+    /**
+     * Index the resources below each of the given roots, which are the
+     * resource nodes that represent the <code>resources</code> elements.
+     *
+     * @param roots the root resources.
+     */
+    public ResourceIndex(List<ResourceNode> roots) {
+        IdentityHashMap<ResourceNode, Boolean> seen = new IdentityHashMap<ResourceNode, Boolean>();
+        for (ResourceNode r : roots) {
+            root.setResource(r);
+            for (ResourceNode child : r.getChildResources()) {
+                add(root, child, seen);
+            }
+        }
+        root.sort();
+    }
+
+    /**
+     * Add a resource and its children below the given node.
+     */
+    private void add(Node parent, ResourceNode resource, IdentityHashMap<ResourceNode, Boolean> seen) {
+        // Guard against resource types that contain themselves
+        if (seen.put(resource, Boolean.TRUE) != null) {
+            return;
+        }
+
+        Node node = parent;
+        String template = resource.getUriTemplate();
+        if (template != null) {
+            TemplateSegment segment = new TemplateSegment();
+            UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+            while (tokenizer.next()) {
+                if (tokenizer.isParameter()) {
+                    segment.addParameter(tokenizer.getName(), tokenizer.getRegex());
+                    continue;
+                }
+                String literal = tokenizer.getLiteral();
+                int start = 0;
+                int slash;
+                while ((slash = literal.indexOf('/', start)) != -1) {
+                    segment.addLiteral(literal.substring(start, slash));
+                    node = segment.child(node);
+                    segment = new TemplateSegment();
+                    start = slash + 1;
+                }
+                segment.addLiteral(literal.substring(start));
+            }
+            node = segment.child(node);
+        }
+        node.setResource(resource);
+
+        for (ResourceNode child : resource.getChildResources()) {
+            add(node, child, seen);
+        }
+        seen.remove(resource);
+    }
+
+    /**
+     * Find the resource for a path.
+     *
+     * @param path the path relative to the base of the resources.
+     * @return the match, or null if no resource matches the path.
+     */
+    public Match match(String path) {
+        int start = 0;
+        int end = path.length();
+        if (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        if (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return find(root, path, start, end);
+    }
+
+    private static Match find(Node node, String path, int start, int end) {
+        if (start >= end) {
+            return node.match;
+        }
+
+        int slash = path.indexOf('/', start);
+        int segmentEnd = slash == -1 || slash > end ? end : slash;
+        int next = segmentEnd == end ? end : segmentEnd + 1;
+
+        Node child = node.literals.get(path, start, segmentEnd);
+        if (child != null) {
+            Match found = find(child, path, next, end);
+            if (found != null) {
+                return found;
+            }
+        }
+
+        for (TemplateChild template : node.templates) {
+            Matcher matcher = template.pattern.matcher(path);
+            matcher.region(start, segmentEnd);
+            if (!matcher.matches()) {
+                continue;
+            }
+            Match found = find(template.node, path, next, end);
+            if (found != null) {
+                Map<String, String> values = new HashMap<String, String>(found.values);
+                for (int i = 0; i < template.names.length; i++) {
+                    values.put(template.names[i], matcher.group(template.groups[i]));
+                }
+                return new Match(found.resource, Collections.unmodifiableMap(values));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The result of a successful lookup.
+     */
+    public static final class Match {
+
+        private final ResourceNode resource;
+        private final Map<String, String> values;
+
+        Match(ResourceNode resource, Map<String, String> values) {
+            this.resource = resource;
+            this.values = values;
+        }
+
+        /**
+         * @return the resource that matched the path.
+         */
+        public ResourceNode getResource() {
+            return resource;
+        }
+
+        /**
+         * @return the values of the template parameters taken from the
+         *   path, keyed by parameter name.
+         */
+        public Map<String, String> getValues() {
+            return values;
+        }
+
+        /**
+         * @param name the HTTP method name.
+         * @return the method of the resource with the given name, or null if
+         *   the resource doesn't support it.
+         */
+        public MethodNode getMethod(String name) {
+            for (MethodNode method : resource.getMethods()) {
+                if (method.getName().equals(name)) {
+                    return method;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A level of the trie.
+     */
+    private static final class Node {
+
+        private Match match;
+        private final RegionHashMap<Node> literals = new RegionHashMap<Node>();
+        private final List<TemplateChild> templates = new ArrayList<TemplateChild>();
+
+        void setResource(ResourceNode resource) {
+            if (match == null) {
+                match = new Match(resource, Collections.<String, String>emptyMap());
+            }
+        }
+
+        Node templateChild(String regex, String[] names, int[] groups,
+                int literalCharacters, int regexParameters) {
+            for (TemplateChild template : templates) {
+                if (template.regex.equals(regex) && Arrays.equals(template.names, names)) {
+                    return template.node;
+                }
+            }
+            TemplateChild template = new TemplateChild(
+                    regex, names, groups, literalCharacters, regexParameters);
+            templates.add(template);
+            return template.node;
+        }
+
+        void sort() {
+            Collections.sort(templates, MOST_SPECIFIC_FIRST);
+            for (int i = 0; i < literals.capacity(); i++) {
+                Node child = literals.valueAt(i);
+                if (child != null) {
+                    child.sort();
+                }
+            }
+            for (TemplateChild template : templates) {
+                template.node.sort();
+            }
+        }
+    }
+
+    /**
+     * A segment containing template parameters, matched with a regular
+     * expression.
+     */
+    private static final class TemplateChild {
+
+        private final String regex;
+        private final Pattern pattern;
+        private final String[] names;
+        private final int[] groups;
+        private final int literalCharacters;
+        private final int regexParameters;
+        private final Node node = new Node();
+
+        TemplateChild(String regex, String[] names, int[] groups,
+                int literalCharacters, int regexParameters) {
+            this.regex = regex;
+            this.pattern = Pattern.compile(regex);
+            this.names = names;
+            this.groups = groups;
+            this.literalCharacters = literalCharacters;
+            this.regexParameters = regexParameters;
+        }
+    }
+
+    private static final Comparator<TemplateChild> MOST_SPECIFIC_FIRST = new Comparator<TemplateChild>() {
+        public int compare(TemplateChild a, TemplateChild b) {
+            if (a.literalCharacters != b.literalCharacters) {
+                return b.literalCharacters - a.literalCharacters;
+            }
+            if (a.names.length != b.names.length) {
+                return b.names.length - a.names.length;
+            }
+            return b.regexParameters - a.regexParameters;
+        }
+    };
+
+    /**
+     * Collects one segment of a template while the template is tokenized.
+     */
+    private static final class TemplateSegment {
+
+        private final StringBuilder literal = new StringBuilder();
+        private final StringBuilder regex = new StringBuilder();
+        private final List<String> names = new ArrayList<String>();
+        private final List<Integer> groups = new ArrayList<Integer>();
+        private int literalCharacters;
+        private int regexParameters;
+        private int groupCount;
+
+        void addLiteral(String text) {
+            literal.append(text);
+            if (text.length() > 0) {
+                regex.append(Pattern.quote(text));
+                literalCharacters += text.length();
+            }
+        }
+
+        void addParameter(String name, String parameterRegex) {
+            names.add(name);
+            groups.add(++groupCount);
+            if (parameterRegex == null) {
+                regex.append("([^/]+)");
+            }
+            else {
+                regex.append('(').append(parameterRegex).append(')');
+                groupCount += Pattern.compile(parameterRegex).matcher("").groupCount();
+                regexParameters++;
+            }
+        }
+
+        /**
+         * @return the child of the given node for this segment, created if
+         *   required.
+         */
+        Node child(Node parent) {
+            if (names.isEmpty()) {
+                String key = literal.toString();
+                if (key.length() == 0) {
+                    // Leading, trailing or doubled slash
+                    return parent;
+                }
+                Node child = parent.literals.get(key);
+                if (child == null) {
+                    child = new Node();
+                    parent.literals.put(key, child);
+                }
+                return child;
+            }
+            int[] groupArray = new int[groups.size()];
+            for (int i = 0; i < groupArray.length; i++) {
+                groupArray[i] = groups.get(i);
+            }
+            return parent.templateChild(regex.toString(),
+                    names.toArray(new String[names.size()]), groupArray,
+                    literalCharacters, regexParameters);
+        }
+    }
+}
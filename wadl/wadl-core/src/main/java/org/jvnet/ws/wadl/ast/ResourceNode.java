@@ -50,6 +50,7 @@ public class ResourceNode extends AbstractNode {
     private List<MethodNode> methods;
     private List<ResourceTypeNode> types;
     private List<Doc> doc;
+    private Locator location;
     
     /**
      * Creates a new instance of ResourceNode.
@@ -378,11 +379,43 @@ public class ResourceNode extends AbstractNode {
      */
     @Override
     public Locator getLocation() {
-        return rootElement instanceof Application ?
+        if (rootElement == null)
+            return location;
+        return rootElement instanceof Resources ?
                 ((Resources)rootElement).sourceLocation():
                 ((Resource)rootElement).sourceLocation();
     }
     
+    /**
+     * Compact this resource and everything below it.
+     *
+     * @param compactor the compactor doing the work.
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        className = compactor.string(className);
+        pathSegment.compact(compactor);
+        childResources = compactor.list(childResources);
+        methods = compactor.list(methods);
+        types = compactor.list(types);
+        doc = compactor.list(doc);
+        if (compactor.isDropSources() && rootElement != null) {
+            location = getLocation();
+            rootElement = null;
+        }
+        
+        for (ResourceTypeNode node : types) {
+            node.compact(compactor);
+        }
+        for (ResourceNode node : childResources) {
+            node.compact(compactor);
+        }
+        for (MethodNode node : methods) {
+            node.compact(compactor);
+        }
+    }
+    
     /**
      * Allow the provided parameter to visit the current node and any
      * child nodes.
@@ -46,6 +46,7 @@ public class ResourceTypeNode extends AbstractNode {
     private List<Doc> doc;
     private JDefinedClass generatedInterface;
     private ResourceType resourceType;
+    private Locator location;
     
     /**
      * Create a new instance of ResourceTypeNode.
@@ -156,7 +157,33 @@ public class ResourceTypeNode extends AbstractNode {
      */
     @Override
     public Locator getLocation() {
-        return resourceType.sourceLocation();
+        return resourceType == null ? location : resourceType.sourceLocation();
+    }
+    
+    /**
+     * Compact this resource type and everything below it.
+     *
+     * @param compactor the compactor doing the work.
+     */
+    void compact(AstCompactor compactor) {
+        if (!compactor.firstVisit(this))
+            return;
+        interfaceName = compactor.string(interfaceName);
+        pathSegment.compact(compactor);
+        methods = compactor.list(methods);
+        resources = compactor.list(resources);
+        doc = compactor.list(doc);
+        if (compactor.isDropSources() && resourceType != null) {
+            location = resourceType.sourceLocation();
+            resourceType = null;
+        }
+        
+        for (ResourceNode node : resources) {
+            node.compact(compactor);
+        }
+        for (MethodNode node : methods) {
+            node.compact(compactor);
+        }
     }
     
     /**
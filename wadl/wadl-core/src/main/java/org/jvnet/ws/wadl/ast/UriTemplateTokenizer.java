@@ -0,0 +1,245 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+/**
+ * Splits a URI template such as <code>users/{id: \d{3}}/orders</code> into
+ * literal text and parameters in a single pass, without regular expressions.
+ * <p>
+ * A parameter is written <code>{name}</code> or <code>{name: regex}</code>,
+ * braces inside the regular expression may be nested, and a <code>{</code>
+ * that is never closed is treated as literal text. The tokenizer only records
+ * offsets into the template, so strings are only created when asked for and a
+ * single instance can be re-used for many templates by calling
+ * {@link #reset(String)}. Instances are not thread safe.
+ * <pre>
+ * UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+ * while (tokenizer.next()) {
+ *     if (tokenizer.isParameter()) {
+ *         ... tokenizer.getName() ...
+ *     }
+ *     else {
+ *         ... tokenizer.getLiteral() ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class UriTemplateTokenizer {
+
+    private String template;
+    private int length;
+    private int position;
+
+    private boolean parameter;
+    private int start;
+    private int end;
+    private int nameStart;
+    private int nameEnd;
+    private int regexStart;
+    private int regexEnd;
+
+    /**
+     * Create a tokenizer with no template, {@link #reset(String)} must be
+     * called before use.
+     */
+    public UriTemplateTokenizer() {
+        reset("");
+    }
+
+    /**
+     * @param template the template to tokenize.
+     */
+    public UriTemplateTokenizer(String template) {
+        reset(template);
+    }
+
+    /**
+     * Start again on a new template.
+     * @param template the template to tokenize, null is treated as the empty
+     *   string.
+     * @return {@code this}.
+     */
+    public UriTemplateTokenizer reset(String template) {
+        this.template = template == null ? "" : template;
+        this.length = this.template.length();
+        this.position = 0;
+        this.start = 0;
+        this.end = 0;
+        this.parameter = false;
+        return this;
+    }
+
+    /**
+     * Move to the next token.
+     * @return false if the end of the template has been reached.
+     */
+    public boolean next() {
+        if (position >= length) {
+            return false;
+        }
+        start = position;
+        int open = template.indexOf('{', position);
+        while (open != -1) {
+            int close = findClose(open);
+            if (close != -1) {
+                if (open == start) {
+                    parameter(open, close);
+                }
+                else {
+                    literal(open);
+                }
+                return true;
+            }
+            // Never closed, so just part of the literal text
+            open = template.indexOf('{', open + 1);
+        }
+        literal(length);
+        return true;
+    }
+
+    /**
+     * @return the offset of the brace that closes the parameter opened at
+     *   the given offset, or -1 if it is never closed.
+     */
+    private int findClose(int open) {
+        int depth = 0;
+        for (int i = open + 1; i < length; i++) {
+            char c = template.charAt(i);
+            if (c == '{') {
+                depth++;
+            }
+            else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private void literal(int to) {
+        parameter = false;
+        end = to;
+        position = to;
+    }
+
+    private void parameter(int open, int close) {
+        parameter = true;
+        end = close + 1;
+        position = end;
+
+        int colon = template.indexOf(':', open + 1);
+        if (colon == -1 || colon > close) {
+            nameStart = open + 1;
+            nameEnd = close;
+            regexStart = -1;
+            regexEnd = -1;
+        }
+        else {
+            nameStart = open + 1;
+            nameEnd = colon;
+            regexStart = colon + 1;
+            regexEnd = close;
+            while (regexStart < regexEnd && Character.isWhitespace(template.charAt(regexStart))) {
+                regexStart++;
+            }
+            while (regexEnd > regexStart && Character.isWhitespace(template.charAt(regexEnd - 1))) {
+                regexEnd--;
+            }
+        }
+        while (nameStart < nameEnd && Character.isWhitespace(template.charAt(nameStart))) {
+            nameStart++;
+        }
+        while (nameEnd > nameStart && Character.isWhitespace(template.charAt(nameEnd - 1))) {
+            nameEnd--;
+        }
+    }
+
+    /**
+     * @return true if the current token is a parameter, false if it is
+     *   literal text.
+     */
+    public boolean isParameter() {
+        return parameter;
+    }
+
+    /**
+     * @return the offset in the template of the start of the current token.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the offset in the template just after the end of the current
+     *   token.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the whole of the current token, including any braces.
+     */
+    public String getText() {
+        return template.substring(start, end);
+    }
+
+    /**
+     * @return the literal text of the current token.
+     * @throws IllegalStateException if the current token is a parameter.
+     */
+    public String getLiteral() {
+        if (parameter) {
+            throw new IllegalStateException();
+        }
+        return template.substring(start, end);
+    }
+
+    /**
+     * @return the name of the current parameter without any surrounding white
+     *   space.
+     * @throws IllegalStateException if the current token is literal text.
+     */
+    public String getName() {
+        if (!parameter) {
+            throw new IllegalStateException();
+        }
+        return template.substring(nameStart, nameEnd);
+    }
+
+    /**
+     * @return the regular expression constraining the current parameter, or
+     *   null if there isn't one.
+     * @throws IllegalStateException if the current token is literal text.
+     */
+    public String getRegex() {
+        if (!parameter) {
+            throw new IllegalStateException();
+        }
+        return regexStart == -1 ? null : template.substring(regexStart, regexEnd);
+    }
+
+    /**
+     * Append the current token to a buffer, the literal text or the name of
+     * the parameter, without creating an intermediate string.
+     * @param buffer the buffer to append to.
+     * @return the buffer.
+     */
+    public StringBuilder appendTo(StringBuilder buffer) {
+        if (parameter) {
+            return buffer.append(template, nameStart, nameEnd);
+        }
+        return buffer.append(template, start, end);
+    }
+}
@@ -15,19 +15,32 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 import org.jvnet.ws.wadl.*;
+import org.jvnet.ws.wadl.util.DocumentResolver;
 import org.jvnet.ws.wadl.util.MessageListener;
 import org.jvnet.ws.wadl.xslt.WadlXsltUtils;
 import org.w3c.dom.Element;
@@ -55,12 +68,33 @@ public class WadlAstBuilder {
         
     }
     
+    /**
+     * The namespace of the current WADL specification, documents in this
+     * namespace don't need to be upgraded.
+     */
+    public static final String WADL_NAMESPACE = "http://wadl.dev.java.net/2009/02";
+    
+    /**
+     * Each thread gets its own transformer created from the shared compiled
+     * upgrade stylesheet.
+     */
+    private static final ThreadLocal<Transformer> UPGRADE_TRANSFORMER = 
+            new ThreadLocal<Transformer>();
+    
     private ElementResolver idMap;
     private Map<String, ResourceTypeNode> ifaceMap;
     private MessageListener messageListener;
-    private List<String> processedDocs;
-    private JAXBContext jbc;
+    private Set<URI> processedDocs;
+    private XMLInputFactory xif;
     private SchemaCallback schemaCallback;
+    private int prefetchThreads = 1;
+    private DocumentResolver documentResolver = DocumentResolver.DIRECT;
+    private ExecutorService prefetchExecutor;
+    private Map<URI, Future<byte[]>> prefetched = new HashMap<URI, Future<byte[]>>();
+    private Map<Representation, RepresentationNode> representationNodes = 
+            new IdentityHashMap<Representation, RepresentationNode>();
+    private Map<Representation, FaultNode> faultNodes = 
+            new IdentityHashMap<Representation, FaultNode>();
     
     /**
      * Create a new instance of the AST builder providing a {@link MessageListener}
@@ -77,7 +111,7 @@ public class WadlAstBuilder {
         this.idMap = new ElementResolver(
                 messageListener);
         this.ifaceMap = new HashMap<String, ResourceTypeNode>();
-        this.processedDocs = new ArrayList<String>();
+        this.processedDocs = new LinkedHashSet<URI>();
         this.schemaCallback = schemaCallback;
         this.messageListener = messageListener;
     }
@@ -86,16 +120,113 @@ public class WadlAstBuilder {
     public Map<String, ResourceTypeNode> getInterfaceMap() {
         return new HashMap<String, ResourceTypeNode>(ifaceMap);
     }
+    
+    /**
+     * Get the documents loaded by this builder. Each document is only loaded
+     * once however it is referred to, the URIs are normalized with
+     * {@link #normalize(URI)} before they are compared.
+     *
+     * @return the normalized URIs of the WADL files and included schemas
+     * that have been read by this builder, in the order they were read.
+     */
+    public Set<URI> getLoadedDocuments() {
+        return Collections.unmodifiableSet(processedDocs);
+    }
+    
+    /**
+     * Normalize the URI of a document so that equivalent URIs compare as
+     * equal: the scheme and host are converted to lower case, the default
+     * port for the scheme, <code>.</code> and <code>..</code> segments and
+     * any fragment are removed, and an empty path becomes <code>/</code>.
+     * The escaped octets in the path and query are left as they are.
+     *
+     * @param uri the URI of a document.
+     * @return the normalized URI.
+     */
+    public static URI normalize(URI uri) {
+        if (uri.isOpaque()) {
+            return uri.getRawFragment() == null ? uri : URI.create(
+                    uri.getScheme() + ":" + uri.getRawSchemeSpecificPart());
+        }
+        
+        uri = uri.normalize();
+        StringBuilder sb = new StringBuilder();
+        String scheme = uri.getScheme();
+        if (scheme != null) {
+            scheme = scheme.toLowerCase(Locale.ENGLISH);
+            sb.append(scheme).append(':');
+        }
+        if (uri.getHost() != null) {
+            sb.append("//");
+            if (uri.getRawUserInfo() != null) {
+                sb.append(uri.getRawUserInfo()).append('@');
+            }
+            sb.append(uri.getHost().toLowerCase(Locale.ENGLISH));
+            int port = uri.getPort();
+            if (port != -1 && port != defaultPort(scheme)) {
+                sb.append(':').append(port);
+            }
+        }
+        else if (uri.getRawAuthority() != null) {
+            sb.append("//").append(uri.getRawAuthority());
+        }
+        String path = uri.getRawPath();
+        if ((path == null || path.length() == 0) && uri.getRawAuthority() != null) {
+            path = "/";
+        }
+        if (path != null) {
+            sb.append(path);
+        }
+        if (uri.getRawQuery() != null) {
+            sb.append('?').append(uri.getRawQuery());
+        }
+        
+        String normalized = sb.toString();
+        return normalized.equals(uri.toString()) ? uri : URI.create(normalized);
+    }
+    
+    private static int defaultPort(String scheme) {
+        if ("http".equals(scheme)) {
+            return 80;
+        }
+        else if ("https".equals(scheme)) {
+            return 443;
+        }
+        else if ("ftp".equals(scheme)) {
+            return 21;
+        }
+        return -1;
+    }
    
     
-    private JAXBContext getJAXBContext() throws JAXBException {
-        // initialize JAXB runtime
-        if (jbc == null) {
-            this.jbc = JAXBContext.newInstance( "org.jvnet.ws.wadl",
-                this.getClass().getClassLoader() );
+    /**
+     * Set the number of threads used to fetch the grammars included by each
+     * WADL file ahead of them being processed. The documents are still passed
+     * to the {@link SchemaCallback} one at a time in document order.
+     *
+     * @param prefetchThreads the number of threads, 1 or less to fetch each
+     *   document only when it is needed.
+     */
+    public void setPrefetchThreads(int prefetchThreads) {
+        this.prefetchThreads = prefetchThreads;
+    }
+    
+    /**
+     * Set the resolver used to fetch the WADL files and the grammars they
+     * include, by default each one is fetched directly from its URL.
+     *
+     * @param documentResolver the resolver to use.
+     */
+    public void setDocumentResolver(DocumentResolver documentResolver) {
+        this.documentResolver = documentResolver;
+    }
+    
+    private XMLInputFactory getXMLInputFactory() {
+        if (xif == null) {
+            this.xif = XMLInputFactory.newInstance();
         }
-        return jbc;
-    }    
+        return xif;
+    }
     
 
     
@@ -109,11 +240,22 @@ public class WadlAstBuilder {
      * @throws IOException if the specified WADL file cannot be read.
      */
     public ApplicationNode buildAst(URI rootFile) throws InvalidWADLException, IOException {
+        if (prefetchThreads > 1) {
+            prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads);
+        }
         try {
             Application a = processDescription(rootFile);
-            return buildAst(a,rootFile);
+            ApplicationNode an = buildAst(a,rootFile);
+            messageListener.info(AstMessages.DOCUMENTS_LOADED(processedDocs.size()));
+            return an;
         } catch (JAXBException ex) {
             throw new RuntimeException("Internal error",ex);
+        } finally {
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+                prefetchExecutor = null;
+            }
+            prefetched.clear();
         }
     }
     
@@ -245,8 +387,12 @@ public class WadlAstBuilder {
             String href, 
             URI file) throws InvalidWADLException {
         // dereference resource
+        // the resource type map is keyed by the normalized file, see 
+        // ElementResolver.addReference
+        int hash = href.indexOf('#');
         file = getReferencedFile(file, href);
-        ResourceTypeNode n = ifaceMap.get(file.toString()+href.substring(href.indexOf('#')));
+        ResourceTypeNode n = hash == -1 ? null 
+                : ifaceMap.get(normalize(file).toString()+href.substring(hash));
         
         if (n != null) {
             resourceNode.addResourceType(n);
@@ -427,8 +573,10 @@ public class WadlAstBuilder {
                 boolean isFault = isFaultResponse(response);
                 for (Representation o: response.getRepresentation()) {
                     if (isFault) {
-                        FaultNode fn = new FaultNode(o);
-                        n.getFaults().add(response.getStatus(), fn); 
+                        FaultNode fn = createFaultNode(o, file);
+                        if (fn != null) {
+                          n.getFaults().add(response.getStatus(), fn); 
+                        }
                     } else {
                         RepresentationNode rn = createRepresentationNode(o, file);
                         if (rn != null) {
@@ -443,14 +591,65 @@ public class WadlAstBuilder {
     /**
      * Add a representation to a method's input or output list.
      *
-     * <p>Follow references to representations across WADL file boundaries.</p>
-     * @param list the list to add the representation to.
+     * <p>Follow references to representations across WADL file boundaries.
+     * There is a single node for each representation definition, however
+     * many times it is referenced.</p>
      * @param representation the WADL representation element to process.
      * @param file the URI of the current WADL file being processed.
+     * @return the node for the representation, or null if it cannot be resolved.
      * @throws InvalidWADLException when WADL is invalid and cannot be processed.
      */
     protected RepresentationNode createRepresentationNode(Representation representation, 
             URI file) throws InvalidWADLException {
+        representation = dereference(representation, file);
+        if (representation != null) {
+            RepresentationNode n = representationNodes.get(representation);
+            if (n == null) {
+                n = new RepresentationNode(representation);
+                representationNodes.put(representation, n);
+            }
+            return n;
+        }
+
+        return null;
+    }
+    
+    /**
+     * Add a representation to a method's fault list.
+     *
+     * <p>Follow references to representations across WADL file boundaries.
+     * There is a single node for each fault definition, however many times
+     * it is referenced.</p>
+     * @param representation the WADL representation element of the fault response.
+     * @param file the URI of the current WADL file being processed.
+     * @return the node for the fault, or null if it cannot be resolved.
+     * @throws InvalidWADLException when WADL is invalid and cannot be processed.
+     */
+    protected FaultNode createFaultNode(Representation representation, 
+            URI file) throws InvalidWADLException {
+        representation = dereference(representation, file);
+        if (representation != null) {
+            FaultNode n = faultNodes.get(representation);
+            if (n == null) {
+                n = new FaultNode(representation);
+                faultNodes.put(representation, n);
+            }
+            return n;
+        }
+
+        return null;
+    }
+    
+    /**
+     * Follow a reference to a representation, if it is one.
+     * @param representation the WADL representation element to process.
+     * @param file the URI of the current WADL file being processed.
+     * @return the referenced definition, the element itself if it isn't a
+     * reference, or null if it cannot be resolved.
+     * @throws InvalidWADLException when WADL is invalid and cannot be processed.
+     */
+    private Representation dereference(Representation representation, 
+            URI file) throws InvalidWADLException {
         String href = representation.getHref();
         if (href != null && href.length() > 0) {
             
@@ -471,12 +670,7 @@ public class WadlAstBuilder {
             file = getReferencedFile(file, href);
             representation = idMap.resolve(file, href, representation);
         }
-        if (representation != null) {
-            RepresentationNode n = new RepresentationNode(representation);
-            return n;
-        }
-
-        return null;
+        return representation;
     }
     
 
@@ -487,8 +681,9 @@ public class WadlAstBuilder {
      * any items with an ID to a global ID map, and follow any references to additional
      * WADL files.
      *
-     * @param desc the URI of the description file, the description is fetched by
-     * converting the URI into a URL and then using a HTTP GET. Use
+     * @param desc the URI of the description file, the description is fetched
+     * using the {@link DocumentResolver}, by default converting the URI into
+     * a URL and then using a HTTP GET. Use
      * {@link #processDescription(java.net.URI, java.io.InputStream)} to
      * supply the InputStream directly.
      * @return the unmarshalled WADL application element.
@@ -498,8 +693,17 @@ public class WadlAstBuilder {
      */
     protected Application processDescription(URI desc) 
             throws JAXBException, IOException {
-        InputStream is = desc.toURL().openStream();
-        return processDescription(desc, is);
+        // no need to fetch files that have already been processed
+        if (processedDocs.contains(normalize(desc)))
+            return null;
+        
+        InputStream is = openDocument(desc);
+        try {
+            return processDescription(desc, is);
+        }
+        finally {
+            is.close();
+        }
     }
 
     /**
@@ -518,48 +722,55 @@ public class WadlAstBuilder {
             throws JAXBException, IOException {
 
         // check for files that have already been processed to prevent loops
-        if (processedDocs.contains(desc.toString()))
+        if (!processedDocs.add(normalize(desc)))
             return null;
-        processedDocs.add(desc.toString());
         
         // read in WADL file, process with stylesheet to upgrade older versions
         // and then unmarshall the result using JAXB
         messageListener.info(AstMessages.PROCESSING(desc.toString()));
 
         
-        // Upgrade the WADL if required, write to
-        // a insternal string as the direct JAXB transform means that
-        // we don't get the Locator attribute set.
-        StringWriter sw = new StringWriter();
-        
-        StreamResult result = new StreamResult(sw);
+        // Read up to the document element, if it is already in the 2009
+        // namespace then unmarshal straight from the reader which also
+        // provides the Locator information, otherwise upgrade it first
+        Application a;
         try {
-            TransformerFactory tf = TransformerFactory.newInstance("com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl", TransformerFactory.class.getClassLoader());
-            StreamSource stylesheet = new StreamSource(
-                WadlXsltUtils.getUpgradeTransformAsStream());
-            Transformer t = tf.newTransformer(stylesheet);
-            t.transform(new StreamSource(is), result);
-        } catch (Exception ex) {
+            XMLStreamReader reader = getXMLInputFactory().createXMLStreamReader(
+                    desc.toString(), is);
+            try {
+                while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                    reader.next();
+                }
+
+                if (WADL_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    a = (Application)
+                            WadlContextHolder.getUnmarshaller().
+                            unmarshal(reader);
+                }
+                else {
+                    a = upgradeDescription(desc, reader);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
             throw new JAXBException(ex.getMessage(), ex);
         }
         
-        InputSource inputSource = new InputSource(new StringReader(sw.toString()));
-        inputSource.setSystemId(desc.toString());
-        Application a = (Application)
-                getJAXBContext().createUnmarshaller().
-                unmarshal(inputSource);
-        
         // process embedded schemas
         Grammars g = a.getGrammars();
         if (g != null) {
+            for (Include i: g.getInclude()) {
+                prefetchDocument(desc.resolve(i.getHref()));
+            }
             for (Include i: g.getInclude()) {
                 URI incl = desc.resolve(i.getHref());
-                if (processedDocs.contains(incl.toString()))
+                if (!processedDocs.add(normalize(incl)))
                     continue;
-                processedDocs.add(incl.toString());
                 messageListener.info(AstMessages.PROCESSING(incl.toString()));
                 InputSource input = new InputSource(
-                        new BufferedInputStream(incl.toURL().openStream()));
+                        new BufferedInputStream(openDocument(incl)));
                 input.setSystemId(incl.toString());
                 schemaCallback.processSchema(input);
             }
@@ -577,6 +788,109 @@ public class WadlAstBuilder {
         return a;
     }
 
+    /**
+     * Start reading a document into memory on one of the prefetch threads,
+     * does nothing if prefetching is not enabled or the document has already
+     * been read or started.
+     *
+     * @param doc the URI of the document.
+     */
+    private void prefetchDocument(final URI doc) {
+        if (prefetchExecutor == null) {
+            return;
+        }
+        URI normalized = normalize(doc);
+        if (processedDocs.contains(normalized)
+                || prefetched.containsKey(normalized)) {
+            return;
+        }
+        
+        prefetched.put(normalized, prefetchExecutor.submit(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                InputStream is = documentResolver.openStream(doc);
+                try {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = is.read(buffer)) != -1) {
+                        bos.write(buffer, 0, read);
+                    }
+                    return bos.toByteArray();
+                } finally {
+                    is.close();
+                }
+            }
+        }));
+    }
+    
+    /**
+     * Open a document, using the prefetched content if there is any.
+     *
+     * @param doc the URI of the document.
+     * @return a stream from which the document can be read.
+     * @throws IOException if the document cannot be read.
+     */
+    private InputStream openDocument(URI doc) throws IOException {
+        Future<byte[]> content = prefetched.isEmpty() ? null : prefetched.remove(normalize(doc));
+        if (content == null) {
+            return documentResolver.openStream(doc);
+        }
+        
+        try {
+            return new ByteArrayInputStream(content.get());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(doc.toString());
+        }
+    }
+
+    /**
+     * Upgrade an older WADL description using the upgrade stylesheet then
+     * unmarshall the result.
+     *
+     * @param desc the URI of the description file.
+     * @param reader a reader positioned on the document element.
+     * @return the unmarshalled WADL application element.
+     * @throws javax.xml.bind.JAXBException if the WADL file is invalid or 
+     * cannot be transformed.
+     */
+    private Application upgradeDescription(URI desc, XMLStreamReader reader)
+            throws JAXBException {
+        
+        // Write to an internal buffer as the direct JAXB transform means that
+        // we don't get the Locator attribute set.
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        
+        StreamResult result = new StreamResult(bos);
+        try {
+            Transformer t = UPGRADE_TRANSFORMER.get();
+            if (t == null) {
+                t = WadlXsltUtils.getUpgradeTemplates().newTransformer();
+                UPGRADE_TRANSFORMER.set(t);
+            }
+            try {
+                t.transform(new StAXSource(reader), result);
+            }
+            finally {
+                t.reset();
+            }
+        } catch (Exception ex) {
+            throw new JAXBException(ex.getMessage(), ex);
+        }
+        
+        InputSource inputSource = new InputSource(
+                new ByteArrayInputStream(bos.toByteArray()));
+        inputSource.setSystemId(desc.toString());
+        return (Application)
+                WadlContextHolder.getUnmarshaller().
+                unmarshal(inputSource);
+    }
+
     /**
      * Build a map of all method, param, representation, fault and resource_type
      * elements that have an ID. These are used to dereference href values
@@ -692,9 +1006,10 @@ public class WadlAstBuilder {
     protected String processIDHref(URI desc, String id, String href, Object o)
             throws JAXBException, IOException {
         String uniqueId = idMap.addReference(desc, id, o);
-        if (href != null && href.startsWith("#") == false) {
+        if (href != null && href.startsWith("#") == false && href.indexOf('#') != -1) {
             // if the href references another document then unmarshall it
-            // and recursively scan it for id and idrefs
+            // and recursively scan it for id and idrefs, a href without a
+            // fragment cannot be resolved so the document isn't needed
             processDescription(getReferencedFile(desc, href));
         }
         return uniqueId;
@@ -818,6 +1133,8 @@ public class WadlAstBuilder {
     /**
      * Get the referenced file, currentFile will be returned if href is a
      * fragment identifier, otherwise href is resolved against currentFile.
+     * A href without a fragment refers to a whole document, which is then
+     * reported as an unresolved reference by the caller.
      *
      * @param currentFile the uri of the file that contains the reference, used 
      * to provide a base for relative paths.
@@ -828,7 +1145,8 @@ public class WadlAstBuilder {
         if (href.startsWith("#"))
             return currentFile;
         // href references another file
-        return currentFile.resolve(href.substring(0, href.indexOf('#')));
+        int hash = href.indexOf('#');
+        return currentFile.resolve(hash == -1 ? href : href.substring(0, hash));
     }
     
 }
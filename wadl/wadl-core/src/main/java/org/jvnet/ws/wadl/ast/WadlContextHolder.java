@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Holds the single {@link JAXBContext} for the WADL schema classes in
+ * {@code org.jvnet.ws.wadl}, created on first use and then shared by every
+ * {@link WadlAstBuilder} in the process. Creating the context is expensive
+ * whereas it is thread safe once created; unmarshallers are not, so each
+ * thread is given its own.
+ */
+public final class WadlContextHolder {
+
+    private static volatile JAXBContext context;
+
+    private static final ThreadLocal<Unmarshaller> UNMARSHALLER =
+            new ThreadLocal<Unmarshaller>();
+
+    private WadlContextHolder() {
+    }
+
+    /**
+     * @return the shared context for the WADL schema classes.
+     * @throws JAXBException if the context cannot be created.
+     */
+    public static JAXBContext getContext() throws JAXBException {
+        JAXBContext jbc = context;
+        if (jbc == null) {
+            synchronized (WadlContextHolder.class) {
+                jbc = context;
+                if (jbc == null) {
+                    jbc = JAXBContext.newInstance( "org.jvnet.ws.wadl",
+                        WadlContextHolder.class.getClassLoader() );
+                    context = jbc;
+                }
+            }
+        }
+        return jbc;
+    }
+
+    /**
+     * @return an unmarshaller for the WADL schema classes that belongs to
+     *   the calling thread, it must not be passed to another thread.
+     * @throws JAXBException if the context or unmarshaller cannot be created.
+     */
+    public static Unmarshaller getUnmarshaller() throws JAXBException {
+        Unmarshaller u = UNMARSHALLER.get();
+        if (u == null) {
+            u = getContext().createUnmarshaller();
+            UNMARSHALLER.set(u);
+        }
+        return u;
+    }
+}
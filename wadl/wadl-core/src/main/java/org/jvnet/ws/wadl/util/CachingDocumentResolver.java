@@ -0,0 +1,240 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.Properties;
+
+/**
+ * A {@link DocumentResolver} that keeps a copy of each remote document on
+ * disk so that repeated builds do not have to fetch them again.
+ * <p>
+ * The content is stored under the SHA-256 hash of the bytes, so documents
+ * served from several locations are only stored once, along with an entry
+ * for each URI recording the hash, the <code>ETag</code> and
+ * <code>Last-Modified</code> headers and when it was last checked. Within the
+ * time to live a cached document is used as is, after that it is revalidated
+ * with a conditional GET and only downloaded again if it has changed. In
+ * offline mode the network is never used and a document that isn't in the
+ * cache is an error.
+ * <p>
+ * Only <code>http</code> and <code>https</code> URIs are cached, anything else
+ * is opened directly. Instances are safe for use by several threads, and
+ * several processes may share a cache directory.
+ */
+public class CachingDocumentResolver implements DocumentResolver {
+
+    private static final String ENTRY_URI = "uri";
+    private static final String CONTENT = "content";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String CHECKED = "checked";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File entriesDirectory;
+    private final File contentDirectory;
+    private long timeToLive;
+    private boolean offline;
+
+    /**
+     * @param cacheDirectory the directory to hold the cache, created if
+     *   required.
+     */
+    public CachingDocumentResolver(File cacheDirectory) {
+        this.entriesDirectory = new File(cacheDirectory, "entries");
+        this.contentDirectory = new File(cacheDirectory, "content");
+    }
+
+    /**
+     * @param timeToLive how long in milliseconds a cached document is used
+     *   without checking with the server, 0, the default, revalidates each
+     *   time.
+     * @return {@code this}.
+     */
+    public CachingDocumentResolver setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    /**
+     * @param offline whether documents should only ever come from the cache.
+     * @return {@code this}.
+     */
+    public CachingDocumentResolver setOffline(boolean offline) {
+        this.offline = offline;
+        return this;
+    }
+
+    /**
+     * @return the timeToLive
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @return the offline
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public InputStream openStream(URI uri) throws IOException {
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+            return uri.toURL().openStream();
+        }
+
+        File entryFile = new File(entriesDirectory, ContentHash.of(uri.toString().getBytes(UTF8)));
+        Properties entry = load(entryFile);
+        File content = entry != null ? new File(contentDirectory, entry.getProperty(CONTENT)) : null;
+        if (content != null && !content.isFile()) {
+            entry = null;
+            content = null;
+        }
+
+        if (offline) {
+            if (content == null) {
+                throw new IOException(uri + " is not in the cache and the resolver is offline");
+            }
+            return new FileInputStream(content);
+        }
+
+        long now = System.currentTimeMillis();
+        if (content != null
+                && now - Long.parseLong(entry.getProperty(CHECKED, "0")) < timeToLive) {
+            return new FileInputStream(content);
+        }
+
+        // Fetch or revalidate
+        URLConnection connection = uri.toURL().openConnection();
+        if (content != null) {
+            if (entry.getProperty(ETAG) != null) {
+                connection.setRequestProperty("If-None-Match", entry.getProperty(ETAG));
+            }
+            if (entry.getProperty(LAST_MODIFIED) != null) {
+                connection.setIfModifiedSince(Long.parseLong(entry.getProperty(LAST_MODIFIED)));
+            }
+        }
+
+        if (content != null && connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) connection).disconnect();
+            entry.setProperty(CHECKED, Long.toString(now));
+            store(entryFile, entry);
+            return new FileInputStream(content);
+        }
+
+        byte[] bytes = readFully(connection.getInputStream());
+        String contentHash = ContentHash.of(bytes);
+        File contentFile = new File(contentDirectory, contentHash);
+        if (!contentFile.isFile()) {
+            write(contentFile, bytes);
+        }
+
+        Properties updated = new Properties();
+        updated.setProperty(ENTRY_URI, uri.toString());
+        updated.setProperty(CONTENT, contentHash);
+        updated.setProperty(CHECKED, Long.toString(now));
+        if (connection.getHeaderField("ETag") != null) {
+            updated.setProperty(ETAG, connection.getHeaderField("ETag"));
+        }
+        if (connection.getLastModified() != 0) {
+            updated.setProperty(LAST_MODIFIED, Long.toString(connection.getLastModified()));
+        }
+        store(entryFile, updated);
+
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * @return the entry, or null if there isn't one or it cannot be read.
+     */
+    private static Properties load(File entryFile) {
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        Properties entry = new Properties();
+        try {
+            InputStream is = new FileInputStream(entryFile);
+            try {
+                entry.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        return entry.getProperty(CONTENT) != null ? entry : null;
+    }
+
+    private static void store(File entryFile, Properties entry) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        entry.store(bos, null);
+        write(entryFile, bos.toByteArray());
+    }
+
+    /**
+     * Write to a temporary file and then rename, so that another thread or
+     * process never sees a partial file.
+     */
+    private static void write(File file, byte[] bytes) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("Failed to create " + parent.getAbsolutePath());
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            OutputStream os = new FileOutputStream(temp);
+            try {
+                os.write(bytes);
+            } finally {
+                os.close();
+            }
+            if (!temp.renameTo(file)) {
+                // Windows won't rename over an existing file
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Failed to write " + file.getAbsolutePath());
+                }
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
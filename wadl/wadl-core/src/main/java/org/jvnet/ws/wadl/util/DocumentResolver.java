@@ -0,0 +1,46 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Fetches the content of the WADL, schema and customization documents read
+ * by the generator, allowing the caller to replace network access with a
+ * cache or a local copy.
+ *
+ * @see CachingDocumentResolver
+ */
+public interface DocumentResolver {
+
+    /**
+     * Fetches each document directly from its URL every time.
+     */
+    public static final DocumentResolver DIRECT = new DocumentResolver() {
+        public InputStream openStream(URI uri) throws IOException {
+            return uri.toURL().openStream();
+        }
+    };
+
+    /**
+     * Open the content of a document.
+     *
+     * @param uri the absolute URI of the document.
+     * @return a stream from which the document can be read, the caller is
+     *  responsible for closing it.
+     * @throws IOException if the document cannot be read.
+     */
+    public InputStream openStream(URI uri) throws IOException;
+
+}
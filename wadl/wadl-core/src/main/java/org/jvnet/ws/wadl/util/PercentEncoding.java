@@ -0,0 +1,54 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * Percent encodes the values of template and matrix parameters. The source of
+ * this class is also copied into the package of the generated clients, which
+ * don't depend on this library, so it must only use the JDK.
+ */
+public final class PercentEncoding {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String HEX = "0123456789ABCDEF";
+
+    private PercentEncoding() {
+    }
+
+    /**
+     * Append a value, percent encoding everything but the unreserved characters
+     * and those sub delimiters that are safe in a path segment or matrix value.
+     *
+     * @param buffer the buffer to append to.
+     * @param value the value to encode.
+     * @return the buffer.
+     */
+    public static StringBuilder append(StringBuilder buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-._~!$&'()*+,:@".indexOf(c) >= 0) {
+                buffer.append(c);
+            }
+            else {
+                int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+                for (byte b : value.substring(i, end).getBytes(UTF8)) {
+                    buffer.append('%').append(HEX.charAt((b >> 4) & 0xF)).append(HEX.charAt(b & 0xF));
+                }
+                i = end - 1;
+            }
+        }
+        return buffer;
+    }
+}
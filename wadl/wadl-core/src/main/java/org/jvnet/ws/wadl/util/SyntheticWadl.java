@@ -0,0 +1,428 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes made up descriptions of any size for benchmarks and soak tests.
+ * <p>
+ * The resources form trees of the requested depth, alternating between
+ * literal paths and paths that end in a template parameter, with a mix of
+ * <code>GET</code>, <code>PUT</code>, <code>POST</code> and
+ * <code>DELETE</code> methods whose representations use the elements of a
+ * generated schema. Optionally some of the resources have a resource type,
+ * the methods and representations are defined once and referred to by
+ * <code>href</code>, and query parameters are shared in the same way. The
+ * schema can be embedded in the description, included from a separate file
+ * as with the fixtures under <code>src/test/resources</code>, or left out, in
+ * which case the representations are plain text.
+ * <p>
+ * Every name in the output is derived from a counter, so the same settings
+ * always produce the same document and no two resources share a class name
+ * when code is generated from it.
+ */
+public class SyntheticWadl {
+
+    /**
+     * Where the schema for the representations goes.
+     */
+    public static enum SchemaStyle {
+        /** No schema, the representations are plain text. */
+        NONE,
+        /** In the <code>grammars</code> element of the description. */
+        EMBEDDED,
+        /** In a separate file referred to by an <code>include</code>. */
+        INCLUDED
+    }
+
+    private static final String NAMESPACE = "urn:synthetic";
+
+    private int resources = 100;
+    private int depth = 3;
+    private int resourceTypes;
+    private int sharedParams;
+    private int elements = 10;
+    private boolean hrefs;
+    private SchemaStyle schemaStyle = SchemaStyle.EMBEDDED;
+    private String schemaHref = "synthetic.xsd";
+
+    /**
+     * @param resources the number of resource elements, 100 by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setResources(int resources) {
+        this.resources = resources;
+        return this;
+    }
+
+    /**
+     * @param depth the depth of each tree of resources, 1 puts every resource
+     *   directly below the <code>resources</code> element; 3 by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth");
+        }
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @param resourceTypes the number of resource types, each used by some
+     *   of the literal resources; none by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setResourceTypes(int resourceTypes) {
+        this.resourceTypes = resourceTypes;
+        return this;
+    }
+
+    /**
+     * @param sharedParams the number of query parameters defined once at the
+     *   top level and referred to from the <code>GET</code> methods; none by
+     *   default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setSharedParams(int sharedParams) {
+        this.sharedParams = sharedParams;
+        return this;
+    }
+
+    /**
+     * @param elements the number of global elements in the schema, 10 by
+     *   default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setElements(int elements) {
+        if (elements < 1) {
+            throw new IllegalArgumentException("elements");
+        }
+        this.elements = elements;
+        return this;
+    }
+
+    /**
+     * @param hrefs whether methods and representations are defined once and
+     *   referred to by <code>href</code> rather than repeated on each
+     *   resource; false by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setHrefs(boolean hrefs) {
+        this.hrefs = hrefs;
+        return this;
+    }
+
+    /**
+     * @param schemaStyle where the schema goes, embedded by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setSchemaStyle(SchemaStyle schemaStyle) {
+        this.schemaStyle = schemaStyle;
+        return this;
+    }
+
+    /**
+     * @param schemaHref the location of an included schema relative to the
+     *   description, <code>synthetic.xsd</code> by default.
+     * @return {@code this}.
+     */
+    public SyntheticWadl setSchemaHref(String schemaHref) {
+        this.schemaHref = schemaHref;
+        return this;
+    }
+
+    /**
+     * @return the location of an included schema relative to the
+     *   description.
+     */
+    public String getSchemaHref() {
+        return schemaHref;
+    }
+
+    /**
+     * @return where the schema goes.
+     */
+    public SchemaStyle getSchemaStyle() {
+        return schemaStyle;
+    }
+
+    /**
+     * Write the description, along with the schema if it is included, to a
+     * directory.
+     *
+     * @param directory the directory, which must exist.
+     * @param name the file name of the description.
+     * @return the description file.
+     * @throws IOException if a file cannot be written.
+     */
+    public File write(File directory, String name) throws IOException {
+        File description = new File(directory, name);
+        Writer out = new OutputStreamWriter(new FileOutputStream(description), "UTF-8");
+        try {
+            writeDescription(out);
+        } finally {
+            out.close();
+        }
+
+        if (schemaStyle == SchemaStyle.INCLUDED) {
+            out = new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, schemaHref)), "UTF-8");
+            try {
+                writeSchema(out);
+            } finally {
+                out.close();
+            }
+        }
+        return description;
+    }
+
+    /**
+     * Write the description.
+     *
+     * @param out where to write it, as UTF-8.
+     * @throws IOException if the description cannot be written.
+     */
+    public void writeDescription(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<application xmlns=\"http://wadl.dev.java.net/2009/02\"\n");
+        out.write("             xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"\n");
+        out.write("             xmlns:tns=\"" + NAMESPACE + "\">\n");
+
+        if (schemaStyle == SchemaStyle.EMBEDDED) {
+            out.write("  <grammars>\n");
+            writeSchemaElement(out, "    ");
+            out.write("  </grammars>\n");
+        }
+        else if (schemaStyle == SchemaStyle.INCLUDED) {
+            out.write("  <grammars>\n");
+            out.write("    <include href=\"" + schemaHref + "\"/>\n");
+            out.write("  </grammars>\n");
+        }
+
+        out.write("  <resources base=\"http://example.com/api/\">\n");
+        int fanOut = fanOut();
+        int[] counter = new int[1];
+        while (counter[0] < resources) {
+            writeResource(out, 1, fanOut, counter, "    ");
+        }
+        out.write("  </resources>\n");
+
+        for (int i = 0; i < resourceTypes; i++) {
+            out.write("  <resource_type id=\"type" + i + "\">\n");
+            out.write("    <doc>Resource type " + i + "</doc>\n");
+            out.write("    <method name=\"GET\">\n");
+            out.write("      <request>\n");
+            out.write("        <param name=\"format" + i + "\" style=\"query\" type=\"xs:string\"/>\n");
+            out.write("      </request>\n");
+            out.write("      <response status=\"200\">\n");
+            out.write("        <representation mediaType=\"text/plain\"/>\n");
+            out.write("      </response>\n");
+            out.write("    </method>\n");
+            out.write("  </resource_type>\n");
+        }
+
+        if (hrefs) {
+            for (int i = 0; i < elements; i++) {
+                writeMethods(out, i, "  ", true);
+                out.write("  <representation id=\"item" + i + "\"");
+                writeRepresentationAttributes(out, i);
+                out.write("/>\n");
+            }
+        }
+
+        for (int i = 0; i < sharedParams; i++) {
+            out.write("  <param id=\"shared" + i + "\" name=\"shared" + i
+                    + "\" style=\"query\" type=\"xs:string\"/>\n");
+        }
+
+        out.write("</application>\n");
+    }
+
+    /**
+     * Write the schema as a separate document, for use when it is included.
+     *
+     * @param out where to write it, as UTF-8.
+     * @throws IOException if the schema cannot be written.
+     */
+    public void writeSchema(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writeSchemaElement(out, "");
+    }
+
+    /**
+     * @return the smallest number of children per resource that fits the
+     *   resources into trees of the requested depth.
+     */
+    private int fanOut() {
+        for (int fanOut = 1; ; fanOut++) {
+            long capacity = 0;
+            long level = 1;
+            for (int d = 0; d < depth && capacity < resources; d++) {
+                level *= fanOut;
+                capacity += level;
+            }
+            if (capacity >= resources) {
+                return fanOut;
+            }
+        }
+    }
+
+    private void writeResource(Writer out, int level, int fanOut, int[] counter, String indent)
+            throws IOException {
+        int n = counter[0]++;
+        boolean template = level % 2 == 0;
+        boolean typed = resourceTypes > 0 && !template && n % 2 == 0;
+        int element = n % elements;
+
+        out.write(indent + "<resource path=\"");
+        if (template) {
+            out.write("item" + n + "/{item" + n + "Id}");
+        }
+        else {
+            out.write("collection" + n);
+        }
+        out.write('"');
+        if (typed) {
+            out.write(" type=\"#type" + (n / 2 % resourceTypes) + "\"");
+        }
+        out.write(">\n");
+        out.write(indent + "  <doc>Resource " + n + "</doc>\n");
+        if (template) {
+            out.write(indent + "  <param name=\"item" + n + "Id\" style=\"template\" type=\"xs:string\"/>\n");
+        }
+
+        if (hrefs) {
+            if (!typed) {
+                out.write(indent + "  <method href=\"#get" + element + "\"/>\n");
+            }
+            if (n % 3 == 1) {
+                out.write(indent + "  <method href=\"#put" + element + "\"/>\n");
+            }
+            if (n % 4 == 0) {
+                out.write(indent + "  <method href=\"#post" + element + "\"/>\n");
+            }
+        }
+        else {
+            writeMethods(out, n, indent + "  ", !typed);
+        }
+        if (n % 3 == 2) {
+            out.write(indent + "  <method name=\"DELETE\"/>\n");
+        }
+
+        if (level < depth) {
+            for (int i = 0; i < fanOut && counter[0] < resources; i++) {
+                writeResource(out, level + 1, fanOut, counter, indent + "  ");
+            }
+        }
+        out.write(indent + "</resource>\n");
+    }
+
+    /**
+     * Write the methods for an element; inline for one resource, or with ids
+     * for all the resources that refer to them.
+     */
+    private void writeMethods(Writer out, int n, String indent, boolean get) throws IOException {
+        int element = n % elements;
+        String getId = hrefs ? " id=\"get" + element + "\"" : "";
+        String putId = hrefs ? " id=\"put" + element + "\"" : "";
+        String postId = hrefs ? " id=\"post" + element + "\"" : "";
+
+        if (get) {
+            out.write(indent + "<method" + getId + " name=\"GET\">\n");
+            if (sharedParams > 0 || n % 2 == 0) {
+                out.write(indent + "  <request>\n");
+                if (sharedParams > 0) {
+                    out.write(indent + "    <param href=\"#shared" + (n % sharedParams) + "\"/>\n");
+                }
+                if (n % 2 == 0) {
+                    out.write(indent + "    <param name=\"start\" style=\"query\" type=\"xs:int\"/>\n");
+                    out.write(indent + "    <param name=\"count\" style=\"query\" type=\"xs:int\" default=\"10\"/>\n");
+                }
+                out.write(indent + "  </request>\n");
+            }
+            out.write(indent + "  <response status=\"200\">\n");
+            writeRepresentation(out, n, indent + "    ");
+            out.write(indent + "  </response>\n");
+            out.write(indent + "  <response status=\"404\">\n");
+            out.write(indent + "    <representation mediaType=\"text/plain\"/>\n");
+            out.write(indent + "  </response>\n");
+            out.write(indent + "</method>\n");
+        }
+        if (hrefs || n % 3 == 1) {
+            out.write(indent + "<method" + putId + " name=\"PUT\">\n");
+            out.write(indent + "  <request>\n");
+            writeRepresentation(out, n, indent + "    ");
+            out.write(indent + "  </request>\n");
+            out.write(indent + "</method>\n");
+        }
+        if (hrefs || n % 4 == 0) {
+            out.write(indent + "<method" + postId + " name=\"POST\">\n");
+            out.write(indent + "  <request>\n");
+            writeRepresentation(out, n, indent + "    ");
+            out.write(indent + "  </request>\n");
+            out.write(indent + "  <response status=\"201\">\n");
+            writeRepresentation(out, n, indent + "    ");
+            out.write(indent + "  </response>\n");
+            out.write(indent + "</method>\n");
+        }
+    }
+
+    private void writeRepresentation(Writer out, int n, String indent) throws IOException {
+        if (hrefs) {
+            out.write(indent + "<representation href=\"#item" + (n % elements) + "\"/>\n");
+        }
+        else {
+            out.write(indent + "<representation");
+            writeRepresentationAttributes(out, n % elements);
+            out.write("/>\n");
+        }
+    }
+
+    private void writeRepresentationAttributes(Writer out, int element) throws IOException {
+        if (schemaStyle == SchemaStyle.NONE) {
+            out.write(" mediaType=\"text/plain\"");
+        }
+        else {
+            out.write(" mediaType=\"application/xml\" element=\"tns:item" + element + "\"");
+        }
+    }
+
+    private void writeSchemaElement(Writer out, String indent) throws IOException {
+        out.write(indent + "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"\n");
+        out.write(indent + "           xmlns:tns=\"" + NAMESPACE + "\"\n");
+        out.write(indent + "           targetNamespace=\"" + NAMESPACE + "\"\n");
+        out.write(indent + "           elementFormDefault=\"qualified\">\n");
+        for (int i = 0; i < elements; i++) {
+            out.write(indent + "  <xs:complexType name=\"Item" + i + "Type\">\n");
+            out.write(indent + "    <xs:sequence>\n");
+            out.write(indent + "      <xs:element name=\"id\" type=\"xs:string\"/>\n");
+            out.write(indent + "      <xs:element name=\"name\" type=\"xs:string\"/>\n");
+            out.write(indent + "      <xs:element name=\"updated\" type=\"xs:dateTime\"/>\n");
+            out.write(indent + "      <xs:element name=\"tag\" type=\"xs:string\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>\n");
+            if (i > 0) {
+                // Link each type to the one before so the model is connected
+                out.write(indent + "      <xs:element ref=\"tns:item" + (i - 1) + "\" minOccurs=\"0\"/>\n");
+            }
+            out.write(indent + "    </xs:sequence>\n");
+            out.write(indent + "    <xs:attribute name=\"version\" type=\"xs:long\"/>\n");
+            out.write(indent + "  </xs:complexType>\n");
+            out.write(indent + "  <xs:element name=\"item" + i + "\" type=\"tns:Item" + i + "Type\"/>\n");
+        }
+        out.write(indent + "</xs:schema>\n");
+    }
+}
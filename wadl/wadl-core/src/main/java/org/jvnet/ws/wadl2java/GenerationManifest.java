@@ -0,0 +1,287 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.jvnet.ws.wadl2java;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.jvnet.ws.wadl.util.ContentHash;
+import org.jvnet.ws.wadl.util.DocumentResolver;
+
+/**
+ * A record of a previous generation run, used by the build tools to work out
+ * whether the generated sources are already up to date. It holds a content
+ * hash of every document read during the run, that is the root WADL files,
+ * the included WADL and schema documents and the customizations, along with
+ * a fingerprint of the parameters and the list of files that were written.
+ * <p>
+ * The sources are up to date when the fingerprint is the same, every document
+ * still has the same content and every generated file still exists. File
+ * time stamps are never consulted as they are unreliable on fresh checkouts.
+ */
+public class GenerationManifest {
+
+    /**
+     * The default name of the manifest file in the target directory.
+     */
+    public static final String DEFAULT_FILE_NAME = ".wadl2java-manifest";
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String DOCUMENT_PREFIX = "document.";
+    private static final String FILE_PREFIX = "file.";
+
+    private final String fingerprint;
+    private final Map<URI, String> documents = new LinkedHashMap<URI, String>();
+    private final Set<String> generatedFiles = new LinkedHashSet<String>();
+    private DocumentResolver documentResolver = DocumentResolver.DIRECT;
+
+    /**
+     * @param fingerprint a description of all the parameters that affect
+     *   the generated code, see {@link Wadl2Java.Parameters#getFingerprint()}.
+     */
+    public GenerationManifest(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param documentResolver used to read the documents when hashing them,
+     *   this should be the same one given to the processor so that an
+     *   offline cache is respected.
+     */
+    public void setDocumentResolver(DocumentResolver documentResolver) {
+        this.documentResolver = documentResolver;
+    }
+
+    /**
+     * @return the fingerprint of the parameters.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the documents read during the run.
+     */
+    public Set<URI> getDocuments() {
+        return Collections.unmodifiableSet(documents.keySet());
+    }
+
+    /**
+     * @return the relative paths, using '/' as the separator, of the
+     *   generated files.
+     */
+    public Set<String> getGeneratedFiles() {
+        return Collections.unmodifiableSet(generatedFiles);
+    }
+
+    /**
+     * Record the current content of a document read during the run.
+     *
+     * @param document the location of the document.
+     * @throws IOException if the document cannot be read.
+     */
+    public void addDocument(URI document) throws IOException {
+        if (!documents.containsKey(document)) {
+            documents.put(document, hash(document));
+        }
+    }
+
+    /**
+     * Record the current content of each document read during the run.
+     *
+     * @param documents the locations of the documents.
+     * @throws IOException if one of the documents cannot be read.
+     */
+    public void addDocuments(Iterable<URI> documents) throws IOException {
+        for (URI document : documents) {
+            addDocument(document);
+        }
+    }
+
+    /**
+     * @param path the relative path, using '/' as the separator, of a
+     *   generated file.
+     */
+    public void addGeneratedFile(String path) {
+        generatedFiles.add(path);
+    }
+
+    /**
+     * Wrap a code writer so that each file it writes is recorded in this
+     * manifest.
+     *
+     * @param codeWriter the code writer that actually writes the files.
+     * @return a code writer to pass to {@link Wadl2Java.Parameters#setCodeWriter(CodeWriter)}.
+     */
+    public CodeWriter record(final CodeWriter codeWriter) {
+        return new CodeWriter() {
+            @Override
+            public OutputStream openBinary(JPackage pkg, String fileName) throws IOException {
+                addGeneratedFile(pkg.isUnnamed() ? fileName
+                        : pkg.name().replace('.', '/') + '/' + fileName);
+                return codeWriter.openBinary(pkg, fileName);
+            }
+
+            @Override
+            public void close() throws IOException {
+                codeWriter.close();
+            }
+        };
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the parameters for this run.
+     * @param rootDir the directory the files were generated into.
+     * @return true if the fingerprint matches, all the documents have the
+     *   same content as when they were recorded and all the generated files
+     *   are still present.
+     */
+    public boolean isUpToDate(String fingerprint, File rootDir) {
+        if (!this.fingerprint.equals(fingerprint)) {
+            return false;
+        }
+
+        for (String path : generatedFiles) {
+            if (!new File(rootDir, path.replace('/', File.separatorChar)).isFile()) {
+                return false;
+            }
+        }
+
+        for (Map.Entry<URI, String> entry : documents.entrySet()) {
+            try {
+                if (!entry.getValue().equals(hash(entry.getKey()))) {
+                    return false;
+                }
+            } catch (IOException ex) {
+                // Moved or not reachable, either way we need to try again
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Load a manifest written by a previous run.
+     *
+     * @param file the manifest file.
+     * @return the manifest, or null if there is no manifest or it cannot
+     *   be read.
+     */
+    public static GenerationManifest load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                properties.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+
+        String fingerprint = properties.getProperty(FINGERPRINT);
+        if (fingerprint == null) {
+            return null;
+        }
+
+        GenerationManifest manifest = new GenerationManifest(fingerprint);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(DOCUMENT_PREFIX)) {
+                try {
+                    manifest.documents.put(
+                            new URI(key.substring(DOCUMENT_PREFIX.length())),
+                            properties.getProperty(key));
+                } catch (URISyntaxException ex) {
+                    return null;
+                }
+            } else if (key.startsWith(FILE_PREFIX)) {
+                manifest.generatedFiles.add(key.substring(FILE_PREFIX.length()));
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Write this manifest so it can be checked by the next run.
+     *
+     * @param file the manifest file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT, fingerprint);
+        for (Map.Entry<URI, String> entry : documents.entrySet()) {
+            properties.setProperty(DOCUMENT_PREFIX + entry.getKey().toString(),
+                    entry.getValue());
+        }
+        for (String path : generatedFiles) {
+            properties.setProperty(FILE_PREFIX + path, "");
+        }
+
+        OutputStream os = new FileOutputStream(file);
+        try {
+            properties.store(os, "Generated by wadl2java, do not edit");
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * @param text the text to hash.
+     * @return the hex encoded SHA-256 hash of the text in UTF-8.
+     */
+    public static String hash(String text) {
+        return ContentHash.of(text.getBytes(Charset.forName("UTF-8")));
+    }
+
+    /**
+     * @param document the location of the document.
+     * @return the hex encoded SHA-256 hash of the content of the document.
+     * @throws IOException if the document cannot be read.
+     */
+    private String hash(URI document) throws IOException {
+        MessageDigest digest = ContentHash.newDigest();
+        InputStream is = documentResolver.openStream(document);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+        }
+        return ContentHash.toHex(digest.digest());
+    }
+}
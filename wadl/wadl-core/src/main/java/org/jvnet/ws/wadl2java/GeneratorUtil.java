@@ -37,7 +37,7 @@ import com.sun.codemodel.JFieldVar;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
 import com.sun.codemodel.JVar;
-import org.jvnet.ws.wadl.ast.PathSegment;
+import org.jvnet.ws.wadl.ast.UriTemplateTokenizer;
 
 /**
  * Utility functions for code generators.
@@ -101,15 +101,17 @@ public class GeneratorUtil {
         // Remove any path parameters and replace with the parameter name
         // follow by a space to keep the capitalization going
         
-        input =  input.replaceAll(
-                PathSegment.PARAM_WITH_REGEX_PATTERN, 
-                PathSegment.PARAM_WITH_REGEX_NAME + " ");
- 
-        
-        //
+        StringBuilder names = new StringBuilder(input.length());
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(input);
+        while (tokenizer.next()) {
+            tokenizer.appendTo(names);
+            if (tokenizer.isParameter()) {
+                names.append(' ');
+            }
+        }
         
         StringBuffer buf = new StringBuffer();
-        for(String segment: input.split("[^a-zA-Z0-9_]")) {
+        for(String segment: names.toString().split("[^a-zA-Z0-9_]")) {
             if (segment.length()<1)
                 continue;
             buf.append(segment.substring(0,1).toUpperCase());
@@ -40,6 +40,7 @@ import org.jsonschema2pojo.*;
 import org.jsonschema2pojo.rules.RuleFactory;
 import org.jvnet.ws.wadl.ast.*;
 import org.jvnet.ws.wadl.ast.AbstractNode.NodeVisitor;
+import org.jvnet.ws.wadl.util.DocumentResolver;
 import org.jvnet.ws.wadl.util.MessageListener;
 import org.jvnet.ws.wadl2java.javascript.JavaScriptGenerator;
 import org.jvnet.ws.wadl2java.jaxrs.JAXRS20ResourceClassGenerator;
@@ -77,6 +78,19 @@ public class Wadl2Java {
     
     public static final QName JSON_SCHEMA_DESCRIBEDBY
             = new QName("http://wadl.dev.java.net/2009/02/json-schema","describedby");
+
+    /**
+     * The version of this processor, taken from a resource filtered by the
+     * build, or "unknown" when run from classes that were not filtered.
+     */
+    public static final String VERSION = loadVersion();
+
+    /**
+     * Bump this whenever a change means the same parameters and documents
+     * produce different code, so that the output of snapshot builds, which
+     * all share one {@link #VERSION}, is generated again.
+     */
+    static final int OUTPUT_REVISION = 1;
     
     /**
      * A parameter object to make it easier to extend this class without
@@ -94,6 +108,15 @@ public class Wadl2Java {
         private boolean autoPackage;
         private URI rootDir;
         private Map<String, String> baseURIToClassName = Collections.EMPTY_MAP;
+        private boolean sharedClient;
+        private boolean precompiledUriTemplates;
+        private boolean asyncMethods;
+        private boolean streamingMethods;
+        private boolean jaxbContextResolver;
+        private boolean stacklessExceptions;
+        private boolean responseCache;
+        private int prefetchThreads = 1;
+        private DocumentResolver documentResolver = DocumentResolver.DIRECT;
         private MessageListener messageListener = new MessageListener() {
             public void warning(String message, Throwable throwable) {
                 System.err.println(
@@ -229,6 +252,111 @@ public class Wadl2Java {
             return this;
         }
 
+        /**
+         * @param sharedClient Whether the accessors that don't take a client
+         * should use a single lazily created client held by the root class
+         * rather than creating a new client on each call.
+         * @return {@code this}.
+         */
+        public Parameters setSharedClient(boolean sharedClient) {
+            this.sharedClient = sharedClient;
+            return this;
+        }
+
+        /**
+         * @param precompiledUriTemplates Whether each generated resource class
+         * should hold a template precompiled from the WADL path that is filled
+         * from a fixed array of values rather than using a UriBuilder and map
+         * on each call.
+         * @return {@code this}.
+         */
+        public Parameters setPrecompiledUriTemplates(boolean precompiledUriTemplates) {
+            this.precompiledUriTemplates = precompiledUriTemplates;
+            return this;
+        }
+
+        /**
+         * @param asyncMethods Whether each generated method should have a
+         * variant, with <code>Async</code> on the end of the name, that
+         * returns a CompletionStage rather than blocking for the response.
+         * Only the {@link Wadl2Java#STYLE_JAXRS20} style supports this, and
+         * the generated code then needs Java 8.
+         * @return {@code this}.
+         */
+        public Parameters setAsyncMethods(boolean asyncMethods) {
+            this.asyncMethods = asyncMethods;
+            return this;
+        }
+
+        /**
+         * @param streamingMethods Whether each method with an XML response
+         * whose type holds a single list of child elements should have a
+         * variant, with <code>Stream</code> on the end of the name, that
+         * returns an iterator reading those elements one at a time.
+         * @return {@code this}.
+         */
+        public Parameters setStreamingMethods(boolean streamingMethods) {
+            this.streamingMethods = streamingMethods;
+            return this;
+        }
+
+        /**
+         * @param jaxbContextResolver Whether to generate a ContextResolver in
+         * the target package, registered by the client factory of each root
+         * class, that creates one JAXBContext for all of the generated JAXB
+         * packages the first time it is needed.
+         * @return {@code this}.
+         */
+        public Parameters setJaxbContextResolver(boolean jaxbContextResolver) {
+            this.jaxbContextResolver = jaxbContextResolver;
+            return this;
+        }
+
+        /**
+         * @param stacklessExceptions Whether the generated exceptions for
+         * faults and error status codes should skip filling in the stack
+         * trace, which is most of the cost of creating them.
+         * @return {@code this}.
+         */
+        public Parameters setStacklessExceptions(boolean stacklessExceptions) {
+            this.stacklessExceptions = stacklessExceptions;
+            return this;
+        }
+
+        /**
+         * @param responseCache Whether the generated clients should keep
+         * the responses to GET requests that carry an ETag or Last-Modified
+         * header, in a cache of bounded size, and revalidate them with
+         * conditional requests.
+         * @return {@code this}.
+         */
+        public Parameters setResponseCache(boolean responseCache) {
+            this.responseCache = responseCache;
+            return this;
+        }
+
+        /**
+         * @param prefetchThreads The number of threads used to fetch the
+         * grammars included by each WADL file concurrently, 1 to fetch them
+         * one at a time as they are processed.
+         * @return {@code this}.
+         */
+        public Parameters setPrefetchThreads(int prefetchThreads) {
+            this.prefetchThreads = prefetchThreads;
+            return this;
+        }
+
+        /**
+         * @param documentResolver Used to fetch the WADL, schema and
+         * customization documents, for example a
+         * {@link org.jvnet.ws.wadl.util.CachingDocumentResolver}.
+         * @return {@code this}.
+         */
+        public Parameters setDocumentResolver(DocumentResolver documentResolver) {
+            this.documentResolver = documentResolver;
+            return this;
+        }
+
         /**
          * @return the codeWriter
          */
@@ -292,6 +420,116 @@ public class Wadl2Java {
             return messageListener;
         }
 
+        /**
+         * @return the sharedClient
+         */
+        public boolean isSharedClient() {
+            return sharedClient;
+        }
+
+        /**
+         * @return the precompiledUriTemplates
+         */
+        public boolean isPrecompiledUriTemplates() {
+            return precompiledUriTemplates;
+        }
+
+        /**
+         * @return the asyncMethods
+         */
+        public boolean isAsyncMethods() {
+            return asyncMethods;
+        }
+
+        /**
+         * @return the streamingMethods
+         */
+        public boolean isStreamingMethods() {
+            return streamingMethods;
+        }
+
+        /**
+         * @return the jaxbContextResolver
+         */
+        public boolean isJaxbContextResolver() {
+            return jaxbContextResolver;
+        }
+
+        /**
+         * @return the stacklessExceptions
+         */
+        public boolean isStacklessExceptions() {
+            return stacklessExceptions;
+        }
+
+        /**
+         * @return the responseCache
+         */
+        public boolean isResponseCache() {
+            return responseCache;
+        }
+
+        /**
+         * @return the prefetchThreads
+         */
+        public int getPrefetchThreads() {
+            return prefetchThreads;
+        }
+
+        /**
+         * @return the documentResolver
+         */
+        public DocumentResolver getDocumentResolver() {
+            return documentResolver;
+        }
+
+        /**
+         * @return a description of every parameter that affects the generated
+         * code, along with the version of this processor, suitable for telling
+         * whether a previous run used the same settings.
+         * @see GenerationManifest
+         */
+        public String getFingerprint() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("version=").append(VERSION);
+            sb.append("\noutputRevision=").append(OUTPUT_REVISION);
+            sb.append("\ngenerationStyle=").append(generationStyle);
+            sb.append("\npkg=").append(pkg);
+            sb.append("\nautoPackage=").append(autoPackage);
+            sb.append("\ncustomizations=").append(customizations);
+            sb.append("\nxjcArguments=").append(xjcArguments);
+            sb.append("\ncustomClassNames=").append(new TreeMap<String, String>(baseURIToClassName));
+            sb.append("\nsharedClient=").append(sharedClient);
+            sb.append("\nprecompiledUriTemplates=").append(precompiledUriTemplates);
+            sb.append("\nasyncMethods=").append(asyncMethods);
+            sb.append("\nstreamingMethods=").append(streamingMethods);
+            sb.append("\njaxbContextResolver=").append(jaxbContextResolver);
+            sb.append("\nstacklessExceptions=").append(stacklessExceptions);
+            sb.append("\nresponseCache=").append(responseCache);
+            return sb.toString();
+        }
+
+    }
+
+    /**
+     * @return the version written into version.properties by the build.
+     */
+    private static String loadVersion() {
+        Properties properties = new Properties();
+        InputStream is = Wadl2Java.class.getResourceAsStream("version.properties");
+        if (is != null) {
+            try {
+                try {
+                    properties.load(is);
+                } finally {
+                    is.close();
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(Wadl2Java.class.getName()).log(
+                        Level.FINE, "Cannot read version.properties", ex);
+            }
+        }
+        return properties.getProperty("version", "unknown");
     }
 
     private Parameters parameters;
@@ -389,6 +627,7 @@ public class Wadl2Java {
     private SchemaCompiler s2j;
     private String generatedPackages = "";
     private WadlAstBuilder astBuilder;
+    private Set<URI> processedDocuments = new LinkedHashSet<URI>();
 
     /**
      * Creates a new instance of a Wadl2Java processor.
@@ -404,6 +643,10 @@ public class Wadl2Java {
             throw new IllegalArgumentException(
                     Wadl2JavaMessages.INVALID_GENERATION_STYLE(parameters.getGenerationStyle(), STYLE_SET));
         }
+        if (parameters.isAsyncMethods() && !STYLE_JAXRS20.equals(parameters.getGenerationStyle())) {
+            parameters.getMessageListener().warning(
+                    Wadl2JavaMessages.ASYNC_METHODS_UNSUPPORTED(STYLE_JAXRS20), null);
+        }
     }
 
 
@@ -510,8 +753,11 @@ public class Wadl2Java {
                         s2j.parseSchema(uri, node);
                     }
                 }, parameters.getMessageListener());
+        astBuilder.setPrefetchThreads(parameters.getPrefetchThreads());
+        astBuilder.setDocumentResolver(parameters.getDocumentResolver());
 
         ApplicationNode an = astBuilder.buildAst(rootDesc);
+        processedDocuments.addAll(astBuilder.getLoadedDocuments());
         List<ResourceNode> rs = an.getResources();
 
 
@@ -534,8 +780,10 @@ public class Wadl2Java {
             //
             for (URI customization: parameters.getCustomizations()) {
                 URI incl = rootDesc.resolve(customization);
+                processedDocuments.add(incl);
                 parameters.getMessageListener().info(Wadl2JavaMessages.PROCESSING(incl.toString()));
-                InputSource input = new InputSource(incl.toURL().openStream());
+                InputSource input = new InputSource(
+                        parameters.getDocumentResolver().openStream(incl));
                 input.setSystemId(incl.toString());
                 s2j.parseSchema(input);
             }
@@ -670,6 +918,14 @@ public class Wadl2Java {
         } 
     }
 
+    /**
+     * @return the WADL, schema and customization documents read by each
+     * call to {@link #process(URI)} so far, in the order they were read.
+     */
+    public Set<URI> getProcessedDocuments() {
+        return Collections.unmodifiableSet(processedDocuments);
+    }
+
     private void applyXjcArguments(Options options) {
         if(parameters.getXjcArguments() != null) {
             try {
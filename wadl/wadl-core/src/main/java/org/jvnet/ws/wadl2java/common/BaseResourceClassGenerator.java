@@ -20,6 +20,10 @@
 package org.jvnet.ws.wadl2java.common;
  
 import com.sun.codemodel.*;
+import com.sun.codemodel.fmt.JStaticJavaFile;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.net.URI;
@@ -32,6 +36,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlType;
 import javax.xml.namespace.QName;
@@ -39,6 +44,7 @@ import org.jvnet.ws.wadl.Param;
 import org.jvnet.ws.wadl.ParamStyle;
 import org.jvnet.ws.wadl.ast.*;
 import org.jvnet.ws.wadl.util.MessageListener;
+import org.jvnet.ws.wadl.util.PercentEncoding;
 import org.jvnet.ws.wadl2java.*;
  
 /**
@@ -65,6 +71,13 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
      */
     protected static final String CREATE_CLIENT_INSTANCE = "createClientInstance";
 
+    /**
+     * The method that returns the client shared by the accessors that don't
+     * take a client parameter, only generated when the shared client option
+     * is enabled
+     */
+    protected static final String SHARED_CLIENT_METHOD = "sharedClient";
+
 
     protected static enum MethodType
     {
@@ -78,6 +91,10 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
     private JFieldVar $clientReference;
     private JFieldVar $uriBuilder;
     private JFieldVar $templateMatrixParamValMap;
+    private JFieldVar $compiledTemplate;
+    private JFieldVar $baseUri;
+    private JFieldVar $templateValues;
+    private JMethod $resolveUri;
     private JDefinedClass $class = null;
     private JavaDocUtil javaDoc;
     private String generatedPackages;
@@ -139,6 +156,275 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
 
 
     
+    /**
+     * Generate a public static method called SHARED_CLIENT_METHOD that returns
+     * a single client instance created on first use by CREATE_CLIENT_METHOD.
+     * The instance is held in a private static nested class so that the 
+     * class loader provides the lazy and thread safe initialization for us.
+     * @param parentClass The root class to add the method to
+     */
+    protected void generateSharedClientMethod(JDefinedClass parentClass) {
+        
+        JDefinedClass $holder;
+        try {
+            $holder = parentClass._class(
+                    JMod.PRIVATE | JMod.STATIC | JMod.FINAL, "SharedClientHolder");
+        } catch (JClassAlreadyExistsException ex) {
+            // Already generated for this root class
+            return;
+        }
+        $holder.javadoc().append(Wadl2JavaMessages.SHARED_CLIENT_HOLDER());
+
+        // codegen: private static final Client INSTANCE = createClient();
+        JFieldVar $instance = $holder.field(
+                JMod.PRIVATE | JMod.STATIC | JMod.FINAL, clientType(), "INSTANCE",
+                parentClass.staticInvoke(CREATE_CLIENT_METHOD));
+
+        JMethod $sharedClient = parentClass.method(
+            JMod.PUBLIC | JMod.STATIC, clientType(), SHARED_CLIENT_METHOD);
+        $sharedClient.javadoc().append(Wadl2JavaMessages.SHARED_CLIENT());
+        $sharedClient.body()._return($holder.staticRef($instance));
+    }
+
+    /**
+     * @return an expression that creates the package level ContextResolver
+     *   to register with the client, or null if there is none.
+     * @see #jaxbContextResolverType()
+     */
+    protected JExpression generateJAXBContextResolver() {
+        JClass $resolver = jaxbContextResolverType();
+        return $resolver != null ? JExpr._new($resolver) : null;
+    }
+
+    /**
+     * Generate, once per package, a ContextResolver that returns a single
+     * JAXBContext for all of the packages generated from the schema, created
+     * on first use, so that every root class in the package shares it. Only 
+     * generated when the option is enabled and there are JAXB types.
+     * @return the resolver type, or null if there is none.
+     */
+    private JClass jaxbContextResolverType() {
+        if (!parameters.isJaxbContextResolver() 
+                || generatedPackages == null || generatedPackages.length() == 0) {
+            return null;
+        }
+
+        JDefinedClass $resolver;
+        try {
+            $resolver = pkg._class(JMod.PUBLIC | JMod.FINAL, "JAXBContextResolver");
+        } catch (JClassAlreadyExistsException ex) {
+            return ex.getExistingClass();
+        }
+        $resolver.javadoc().append(Wadl2JavaMessages.JAXB_CONTEXT_RESOLVER());
+        $resolver.annotate(codeModel.ref("javax.ws.rs.ext.Provider"));
+        JClass $jaxbContext = codeModel.ref("javax.xml.bind.JAXBContext");
+        $resolver._implements(codeModel.ref("javax.ws.rs.ext.ContextResolver").narrow($jaxbContext));
+
+        // codegen: private static final String CONTEXT_PATH = "...";
+        JFieldVar $contextPath = $resolver.field(
+                JMod.PRIVATE | JMod.STATIC | JMod.FINAL, String.class, "CONTEXT_PATH",
+                JExpr.lit(generatedPackages));
+        JClass $packagesType = codeModel.ref(Set.class).narrow(String.class);
+        $resolver.field(
+                JMod.PRIVATE | JMod.STATIC | JMod.FINAL, $packagesType, "PACKAGES",
+                codeModel.ref(Collections.class).staticInvoke("unmodifiableSet").arg(
+                    JExpr._new(codeModel.ref(HashSet.class).narrow(String.class)).arg(
+                        codeModel.ref(Arrays.class).staticInvoke("asList").arg(
+                            $contextPath.invoke("split").arg(":")))));
+
+        // As for the shared client the class loader makes sure the context
+        // is only created once and not until it is needed
+        JDefinedClass $holder;
+        try {
+            $holder = $resolver._class(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, "Holder");
+        } catch (JClassAlreadyExistsException ex) {
+            throw new IllegalStateException(ex);
+        }
+        $holder.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, $jaxbContext, "CONTEXT");
+        $holder.init().directStatement(
+                  "try {"
+                + "\n            CONTEXT = javax.xml.bind.JAXBContext.newInstance("
+                + "\n                    CONTEXT_PATH, JAXBContextResolver.class.getClassLoader());"
+                + "\n        } catch (javax.xml.bind.JAXBException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        }");
+
+        JMethod $getContext = $resolver.method(JMod.PUBLIC, $jaxbContext, "getContext");
+        $getContext.param(codeModel.ref(Class.class).narrow(codeModel.wildcard()), "type");
+        $getContext.body().directStatement(
+                  "Package typePackage = type.getPackage();"
+                + "\n        if (typePackage == null || !PACKAGES.contains(typePackage.getName())) {"
+                + "\n            // Leave any other type to the default context"
+                + "\n            return null;"
+                + "\n        }"
+                + "\n        return Holder.CONTEXT;");
+
+        return $resolver;
+    }
+
+    /**
+     * Generate, once per root class, a nested client filter that keeps the
+     * responses to GET requests with an ETag or Last-Modified header, keyed
+     * by the URI and the Accept header. Cached entries are revalidated with
+     * a conditional request and replayed on a 304 response. The cache holds
+     * at most a fixed number of bytes, dropping the least recently used
+     * entries first. Only generated when the option is enabled.
+     * @param parentClass The root class to add the cache to
+     * @return an expression that creates the filter to register with the
+     *   client, or null if there is none.
+     */
+    protected JExpression generateResponseCache(JDefinedClass parentClass) {
+        if (!parameters.isResponseCache()) {
+            return null;
+        }
+
+        JDefinedClass $cache;
+        try {
+            $cache = parentClass._class(
+                    JMod.PUBLIC | JMod.STATIC | JMod.FINAL, "ResponseCache");
+        } catch (JClassAlreadyExistsException ex) {
+            return JExpr._new(ex.getExistingClass());
+        }
+        $cache.javadoc().append(Wadl2JavaMessages.RESPONSE_CACHE());
+
+        JDefinedClass $entry;
+        try {
+            $entry = $cache._class(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, "Entry");
+        } catch (JClassAlreadyExistsException ex) {
+            throw new IllegalStateException(ex);
+        }
+        $entry.field(JMod.FINAL, String.class, "etag");
+        $entry.field(JMod.FINAL, String.class, "lastModified");
+        $entry.field(JMod.FINAL, String.class, "type");
+        $entry.field(JMod.FINAL, byte[].class, "entity");
+        JMethod $entryCtor = $entry.constructor(JMod.NONE);
+        $entryCtor.param(String.class, "etag");
+        $entryCtor.param(String.class, "lastModified");
+        $entryCtor.param(String.class, "type");
+        $entryCtor.param(byte[].class, "entity");
+        $entryCtor.body().directStatement(
+                  "this.etag = etag;"
+                + "\n            this.lastModified = lastModified;"
+                + "\n            this.type = type;"
+                + "\n            this.entity = entity;");
+
+        // codegen: public static final int DEFAULT_MAX_BYTES = 4194304;
+        JFieldVar $defaultMax = $cache.field(
+                JMod.PUBLIC | JMod.STATIC | JMod.FINAL, int.class, "DEFAULT_MAX_BYTES",
+                JExpr.lit(4 * 1024 * 1024));
+        $cache.field(JMod.PRIVATE | JMod.FINAL, int.class, "_maxBytes");
+        $cache.field(JMod.PRIVATE, int.class, "_bytes");
+        // Iterates from the least recently used entry
+        JClass $entriesType = codeModel.ref(LinkedHashMap.class).narrow(codeModel.ref(String.class), $entry);
+        $cache.field(JMod.PRIVATE | JMod.FINAL, $entriesType, "_entries",
+                JExpr._new($entriesType).arg(JExpr.lit(16)).arg(JExpr.lit(0.75f)).arg(JExpr.TRUE));
+
+        JMethod $defaultCtor = $cache.constructor(JMod.PUBLIC);
+        $defaultCtor.body().invoke("this").arg($defaultMax);
+        JMethod $ctor = $cache.constructor(JMod.PUBLIC);
+        $ctor.javadoc().addParam("maxBytes").append(Wadl2JavaMessages.RESPONSE_CACHE_MAX_BYTES());
+        $ctor.param(int.class, "maxBytes");
+        $ctor.body().directStatement("_maxBytes = maxBytes;");
+
+        // Requests that already carry a validator are left to the caller
+        JMethod $key = $cache.method(JMod.PRIVATE | JMod.STATIC, String.class, "key");
+        $key.param(String.class, "method");
+        $key.param(URI.class, "uri");
+        $key.param(codeModel.ref("javax.ws.rs.core.MultivaluedMap").narrow(String.class, Object.class), "headers");
+        $key.body().directStatement(
+                  "if (!\"GET\".equals(method)"
+                + "\n                || headers.containsKey(\"If-None-Match\")"
+                + "\n                || headers.containsKey(\"If-Modified-Since\")) {"
+                + "\n            return null;"
+                + "\n        }"
+                + "\n        return uri + \" \" + headers.get(\"Accept\");");
+
+        JMethod $revalidate = $cache.method(JMod.PRIVATE | JMod.SYNCHRONIZED, $entry, "revalidate");
+        $revalidate.param(String.class, "key");
+        $revalidate.param(codeModel.ref("javax.ws.rs.core.MultivaluedMap").narrow(String.class, Object.class), "headers");
+        $revalidate.body().directStatement(
+                  "Entry entry = _entries.get(key);"
+                + "\n        if (entry != null) {"
+                + "\n            if (entry.etag != null) {"
+                + "\n                headers.putSingle(\"If-None-Match\", entry.etag);"
+                + "\n            }"
+                + "\n            if (entry.lastModified != null) {"
+                + "\n                headers.putSingle(\"If-Modified-Since\", entry.lastModified);"
+                + "\n            }"
+                + "\n        }"
+                + "\n        return entry;");
+
+        // Turns a 304 response into the cached one
+        JMethod $restore = $cache.method(JMod.PRIVATE | JMod.STATIC, InputStream.class, "restore");
+        $restore.param($entry, "entry");
+        $restore.param(codeModel.ref("javax.ws.rs.core.MultivaluedMap").narrow(String.class, String.class), "headers");
+        $restore.body().directStatement(
+                  "if (entry.type != null) {"
+                + "\n            headers.putSingle(\"Content-Type\", entry.type);"
+                + "\n        }"
+                + "\n        headers.putSingle(\"Content-Length\", String.valueOf(entry.entity.length));"
+                + "\n        return new java.io.ByteArrayInputStream(entry.entity);");
+
+        // Reads the entity of a 200 response into the cache, returning the
+        // stream to hand on. Anything over a quarter of the cache is not
+        // kept and is only read as far as needed to find that out.
+        JMethod $store = $cache.method(JMod.PRIVATE, InputStream.class, "store");
+        $store._throws(java.io.IOException.class);
+        $store.param(String.class, "key");
+        $store.param(String.class, "etag");
+        $store.param(String.class, "lastModified");
+        $store.param(String.class, "cacheControl");
+        $store.param(String.class, "type");
+        $store.param(InputStream.class, "in");
+        $store.body().directStatement(
+                  "int limit = _maxBytes / 4;"
+                + "\n        byte[] entity = null;"
+                + "\n        if ((etag != null || lastModified != null)"
+                + "\n                && (cacheControl == null || !cacheControl.contains(\"no-store\"))) {"
+                + "\n            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();"
+                + "\n            byte[] buffer = new byte[8192];"
+                + "\n            int read;"
+                + "\n            while (out.size() <= limit && (read = in.read(buffer)) != -1) {"
+                + "\n                out.write(buffer, 0, read);"
+                + "\n            }"
+                + "\n            entity = out.toByteArray();"
+                + "\n        }"
+                + "\n        boolean keep = entity != null && entity.length <= limit;"
+                + "\n        synchronized (this) {"
+                + "\n            Entry old = _entries.remove(key);"
+                + "\n            if (old != null) {"
+                + "\n                _bytes -= old.entity.length;"
+                + "\n            }"
+                + "\n            if (keep) {"
+                + "\n                _entries.put(key, new Entry(etag, lastModified, type, entity));"
+                + "\n                _bytes += entity.length;"
+                + "\n                java.util.Iterator<Entry> eldest = _entries.values().iterator();"
+                + "\n                while (_bytes > _maxBytes) {"
+                + "\n                    _bytes -= eldest.next().entity.length;"
+                + "\n                    eldest.remove();"
+                + "\n                }"
+                + "\n            }"
+                + "\n        }"
+                + "\n        if (entity == null) {"
+                + "\n            return in;"
+                + "\n        }"
+                + "\n        java.io.InputStream replay = new java.io.ByteArrayInputStream(entity);"
+                + "\n        return keep ? replay : new java.io.SequenceInputStream(replay, in);");
+
+        generateResponseCacheFilter($cache);
+
+        return JExpr._new($cache);
+    }
+
+    /**
+     * Make the class generated by {@link #generateResponseCache} a client
+     * filter for this platform, using its private <code>key</code>,
+     * <code>revalidate</code>, <code>restore</code> and <code>store</code>
+     * methods.
+     * @param $cache the cache class to complete.
+     */
+    protected abstract void generateResponseCacheFilter(JDefinedClass $cache);
+
     /**
      * Get the class for which methods will be generated.
      *
@@ -196,6 +482,7 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             
             // Override the getMessage function
             overrideMessageOnException($exception);
+            overrideStackTraceOnException($exception);
 
             // Hide the fact that we are shaddowing the exception from the user
             {
@@ -218,6 +505,22 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
         }
     }
 
+    /**
+     * Override fillInStackTrace on an exception so that it doesn't walk the
+     * stack, only when the stackless exceptions option is enabled. The 
+     * status code and response are all that a fault needs to carry.
+     * @param $exception the generated exception class
+     */
+    protected void overrideStackTraceOnException(JDefinedClass $exception) {
+        if (!parameters.isStacklessExceptions()) {
+            return;
+        }
+        JMethod $fillInStackTrace = $exception.method(
+                JMod.PUBLIC | JMod.SYNCHRONIZED, Throwable.class, "fillInStackTrace");
+        $fillInStackTrace.javadoc().append(Wadl2JavaMessages.STACKLESS_EXCEPTION());
+        $fillInStackTrace.body()._return(JExpr._this());
+    }
+
     /**
      * Override the getMessage class on an exception to make sure the 
      * status code is displayed
@@ -254,6 +557,29 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
      *  and the second if present the straight (Client)Response object
      */
     protected abstract JExpression[] createProcessInvocation(MethodNode method, JBlock $methodBody, JVar $resourceBuilder, String methodString, RepresentationNode inputRep, JType returnType, JExpression $returnTypeExpr, JExpression $entityExpr);
+
+    /**
+     * Starts the request without waiting for the response, see
+     * {@link #getAsyncProcessInvocation()}.
+     */
+    protected interface AsyncProcessInvocation {
+        /**
+         * @param resultType the type that the returned stage completes with
+         * @return An expression for a CompletionStage that completes with the
+         *  same value, or exception, as the blocking call
+         */
+        JExpression create(MethodNode method, JBlock $methodBody, JVar $resourceBuilder, String methodString, RepresentationNode inputRep, JType returnType, JClass resultType, JExpression $returnTypeExpr, JExpression $entityExpr);
+    }
+
+    /**
+     * @return how to start a request asynchronously, or null if this
+     *  generator cannot create asynchronous variants of each method, in
+     *  which case they are skipped, see
+     *  {@link Wadl2Java.Parameters#setAsyncMethods(boolean)}
+     */
+    protected AsyncProcessInvocation getAsyncProcessInvocation() {
+        return null;
+    }
     
     
     /**
@@ -515,6 +841,20 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                 String.class, Object.class);
         $templateMatrixParamValMap = $impl.field(JMod.PRIVATE, mapOfStringObject, "_templateAndMatrixParameterValues");
 
+        // If required hold a template for this path segment that is compiled
+        // now, along with the values and the lazily resolved URI
+        
+        if (parameters.isPrecompiledUriTemplates()) {
+            $compiledTemplate = generateCompiledTemplateField($impl, resource);
+            $baseUri = $impl.field(JMod.PRIVATE, URI.class, "_baseUri");
+            $templateValues = $impl.field(JMod.PRIVATE, Object[].class, "_templateValues");
+        }
+        else {
+            $compiledTemplate = null;
+            $baseUri = null;
+            $templateValues = null;
+            $resolveUri = null;
+        }
         
 
         // Private constructor for copying
@@ -530,6 +870,14 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
         $ctorCopyBody.assign($uriBuilder, $uriBuilderCopyParam.invoke("clone"));
         $ctorCopyBody.assign($templateMatrixParamValMap, $mapCopyParam);
         
+        if ($compiledTemplate!=null) {
+            // The values will be extracted from the map when first required
+            JVar $baseUriCopyParam = $ctorCopy.param(URI.class, "baseUri");
+            $ctorCopyBody.assign($baseUri, $baseUriCopyParam);
+            
+            $resolveUri = generateResolveUriMethod($impl);
+        }
+        
         
         // If this isn't a root node then we need to generate a method
         // on the parent to access just this class
@@ -571,7 +919,12 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             //
             if (!outer) {
                 invoke.arg($clientReference); 
-                invoke.arg($uriBuilder.invoke("buildFromMap").arg($templateMatrixParamValMap));
+                if ($compiledTemplate!=null) {
+                    invoke.arg(JExpr.invoke($resolveUri));
+                }
+                else {
+                    invoke.arg($uriBuilder.invoke("buildFromMap").arg($templateMatrixParamValMap));
+                }
             } 
             else {
                 invoke.arg($clientAccessorParam);
@@ -608,6 +961,9 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                     
                     if (!found) {
                         generateClientFactoryMethod(parentClass);
+                        if (parameters.isSharedClient()) {
+                            generateSharedClientMethod(parentClass);
+                        }
                     }
                     
                 
@@ -630,9 +986,10 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                     JInvocation $invokeOther = JExpr.invoke($accessorMethod);
                     $noClientBody._return($invokeOther);
 
-                    // Create a client and invoke
+                    // Create or reuse a client and invoke
                     $invokeOther.arg(
-                            JExpr.invoke(CREATE_CLIENT_METHOD));
+                            JExpr.invoke(parameters.isSharedClient()
+                                ? SHARED_CLIENT_METHOD : CREATE_CLIENT_METHOD));
                     $invokeOther.arg(
                             $global_base_uri);
 
@@ -736,6 +1093,23 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                     }
                 }
             }
+            
+            if ($compiledTemplate!=null) {
+                // codegen: _baseUri = baseUri;
+                $ctorBody.assign($baseUri, $uriParam);
+                // codegen: _templateValues = new Object[] { value, ... };
+                JArray $values = JExpr.newArray(codeModel.ref(Object.class));
+                for (String name : getTemplateSlotNames(segment)) {
+                    Param matrix = findMatrixParameter(segment, name);
+                    if (matrix!=null && matrix.isRequired() != Boolean.TRUE) {
+                        $values.add(JExpr._null());
+                    }
+                    else {
+                        $values.add(JExpr.ref(GeneratorUtil.makeParamName(name)));
+                    }
+                }
+                $ctorBody.assign($templateValues, $values);
+            }
         }
 
         // If we have parameters then generate another constructor that tries
@@ -805,6 +1179,503 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
         return $class;
     }
 
+    /**
+     * Get the names of the values held by a compiled template, the template
+     * parameters in the order they first appear followed by the matrix
+     * parameters that don't have a fixed value.
+     * @param segment the segment to process.
+     * @return the slot names in order.
+     */
+    private List<String> getTemplateSlotNames(PathSegment segment) {
+        List<String> names = new ArrayList<String>();
+        for (Param p: segment.getTemplateParameters()) {
+            if (!names.contains(p.getName())) {
+                names.add(p.getName());
+            }
+        }
+        for (Param p: segment.getMatrixParameters()) {
+            if (p.getFixed()==null && !names.contains(p.getName())) {
+                names.add(p.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the matrix parameter with the given name, or null if the
+     * name is that of a template parameter
+     */
+    private Param findMatrixParameter(PathSegment segment, String name) {
+        for (Param p: segment.getTemplateParameters()) {
+            if (p.getName().equals(name)) {
+                return null;
+            }
+        }
+        for (Param p: segment.getMatrixParameters()) {
+            if (p.getName().equals(name)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generate a static field on the resource class containing the path
+     * template of the resource split in to literals and slots at generation time.
+     * @param $impl the resource class.
+     * @param resource the resource the class represents.
+     * @return the field.
+     */
+    private JFieldVar generateCompiledTemplateField(JDefinedClass $impl, ResourceNode resource) {
+        
+        PathSegment segment = resource.getPathSegment();
+        List<String> names = getTemplateSlotNames(segment);
+        
+        // Split the template into literals either side of each parameter
+        JArray $literals = JExpr.newArray(codeModel.ref(String.class));
+        JArray $pathSlots = JExpr.newArray(codeModel.INT);
+        String template = segment.getTemplate();
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+        StringBuilder last = new StringBuilder();
+        while (tokenizer.next()) {
+            if (tokenizer.isParameter()) {
+                $literals.add(JExpr.lit(last.toString()));
+                $pathSlots.add(JExpr.lit(names.indexOf(tokenizer.getName())));
+                last.setLength(0);
+            }
+            else {
+                last.append(tokenizer.getLiteral());
+            }
+        }
+        
+        // Matrix parameters with a fixed value are just part of the last literal
+        for (Param p: segment.getMatrixParameters()) {
+            if (p.getFixed()!=null) {
+                last.append(';').append(p.getName()).append('=').append(p.getFixed());
+            }
+        }
+        $literals.add(JExpr.lit(last.toString()));
+
+        JArray $names = JExpr.newArray(codeModel.ref(String.class));
+        JArray $requiredMessages = JExpr.newArray(codeModel.ref(String.class));
+        int matrixStart = 0;
+        for (String name : names) {
+            $names.add(JExpr.lit(name));
+            Param matrix = findMatrixParameter(segment, name);
+            if (matrix==null) {
+                matrixStart++;
+            }
+            if (matrix!=null && matrix.isRequired() != Boolean.TRUE) {
+                $requiredMessages.add(JExpr._null());
+            }
+            else {
+                $requiredMessages.add(JExpr.lit(
+                        Wadl2JavaMessages.PARAMETER_REQUIRED_RESOURCE(name, $impl.name())));
+            }
+        }
+        
+        JClass $templateType = compiledUriTemplateType($impl);
+        return $impl.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, $templateType, "_TEMPLATE",
+                JExpr._new($templateType)
+                    .arg($literals).arg($pathSlots).arg($names)
+                    .arg(JExpr.lit(matrixStart)).arg($requiredMessages));
+    }
+
+    /**
+     * Generate the method that lazily resolves the URI for this resource
+     * from the compiled template.
+     * @param $impl the resource class.
+     * @return the method.
+     */
+    private JMethod generateResolveUriMethod(JDefinedClass $impl) {
+        
+        JFieldVar $resolvedUri = $impl.field(JMod.PRIVATE, URI.class, "_resolvedUri");
+        
+        JMethod $method = $impl.method(JMod.PRIVATE, URI.class, "resolveUri");
+        $method.javadoc().append(Wadl2JavaMessages.RESOLVE_URI());
+        JBlock $body = $method.body();
+
+        // codegen: URI uri = _resolvedUri; if (uri == null) { ... }
+        JVar $uri = $body.decl(codeModel.ref(URI.class), "uri", $resolvedUri);
+        JBlock $then = $body._if($uri.eq(JExpr._null()))._then();
+        JConditional $hasBase = $then._if($baseUri.ne(JExpr._null()));
+        
+        JBlock $expand = $hasBase._then();
+        JVar $values = $expand.decl(codeModel.ref(Object[].class), "values", $templateValues);
+        $expand._if($values.eq(JExpr._null()))._then().assign($values,
+                $compiledTemplate.invoke("values").arg($templateMatrixParamValMap));
+        $expand.assign($uri, $compiledTemplate.invoke("expand").arg($baseUri).arg($values));
+
+        // Created from a full URI so the path is only available in the builder
+        $hasBase._else().assign($uri, $compiledTemplate.invoke("appendMatrix")
+                .arg($uriBuilder.invoke("buildFromMap").arg($templateMatrixParamValMap))
+                .arg($compiledTemplate.invoke("values").arg($templateMatrixParamValMap)));
+        
+        $then.assign($resolvedUri, $uri);
+        $body._return($uri);
+        return $method;
+    }
+
+    /**
+     * Generate, once per root class, the immutable template type used by
+     * the resource classes when precompiled templates are enabled.
+     * @param context a class nested in the root class.
+     * @return the template type.
+     */
+    private JClass compiledUriTemplateType(JDefinedClass context)
+    {
+        JDefinedClass owningClass = context;
+        while (!(owningClass.parentContainer() instanceof JPackage)) {
+            owningClass = (JDefinedClass) owningClass.parentContainer();
+        }
+
+        JDefinedClass $template;
+        try {
+            $template = owningClass._class(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, "CompiledUriTemplate");
+        } catch (JClassAlreadyExistsException ex) {
+            return ex.getExistingClass();
+        }
+        $template.javadoc().append(Wadl2JavaMessages.COMPILED_URI_TEMPLATE());
+
+        
+        JFieldVar $literals = $template.field(JMod.PRIVATE | JMod.FINAL, String[].class, "_literals");
+        JFieldVar $pathSlots = $template.field(JMod.PRIVATE | JMod.FINAL, int[].class, "_pathSlots");
+        JFieldVar $names = $template.field(JMod.PRIVATE | JMod.FINAL, String[].class, "_names");
+        JFieldVar $matrixStart = $template.field(JMod.PRIVATE | JMod.FINAL, int.class, "_matrixStart");
+        JFieldVar $requiredMessages = $template.field(JMod.PRIVATE | JMod.FINAL, String[].class, "_requiredMessages");
+        
+        JMethod $ctor = $template.constructor(JMod.NONE);
+        JBlock $ctorBody = $ctor.body();
+        $ctorBody.assign(JExpr._this().ref($literals), $ctor.param(String[].class, "literals"));
+        $ctorBody.assign(JExpr._this().ref($pathSlots), $ctor.param(int[].class, "pathSlots"));
+        $ctorBody.assign(JExpr._this().ref($names), $ctor.param(String[].class, "names"));
+        $ctorBody.assign(JExpr._this().ref($matrixStart), $ctor.param(int.class, "matrixStart"));
+        $ctorBody.assign(JExpr._this().ref($requiredMessages), $ctor.param(String[].class, "requiredMessages"));
+
+        // Values in slot order from the bean property map
+        JMethod $values = $template.method(JMod.NONE, Object[].class, "values");
+        $values.param(codeModel.ref(Map.class).narrow(String.class, Object.class), "map");
+        $values.body().directStatement(
+                  "Object[] values = new Object[_names.length];"
+                + "\n        for (int i = 0; i < _names.length; i++) {"
+                + "\n            values[i] = map.get(_names[i]);"
+                + "\n        }"
+                + "\n        return values;");
+        
+        // Append the encoded segment to the base URI followed by the matrix
+        // parameters in one pass
+        JMethod $expand = $template.method(JMod.NONE, URI.class, "expand");
+        $expand.param(URI.class, "base");
+        $expand.param(Object[].class, "values");
+        $expand.body().directStatement(
+                  "for (int i = 0; i < _requiredMessages.length; i++) {"
+                + "\n            if (values[i] == null && _requiredMessages[i] != null) {"
+                + "\n                throw new IllegalArgumentException(_requiredMessages[i]);"
+                + "\n            }"
+                + "\n        }"
+                + "\n        String baseString = base.toString();"
+                + "\n        StringBuilder sb = new StringBuilder(baseString.length() + 64);"
+                + "\n        sb.append(baseString);"
+                + "\n        int mark = sb.length();"
+                + "\n        for (int i = 0; i < _pathSlots.length; i++) {"
+                + "\n            sb.append(_literals[i]);"
+                + "\n            encode(sb, values[_pathSlots[i]]);"
+                + "\n        }"
+                + "\n        sb.append(_literals[_pathSlots.length]);"
+                + "\n        // Make sure there is exactly one slash between the base and the segment"
+                + "\n        if (sb.length() > mark) {"
+                + "\n            boolean baseSlash = mark > 0 && sb.charAt(mark - 1) == '/';"
+                + "\n            boolean segmentSlash = sb.charAt(mark) == '/';"
+                + "\n            if (baseSlash && segmentSlash) {"
+                + "\n                sb.deleteCharAt(mark);"
+                + "\n            } else if (!baseSlash && !segmentSlash) {"
+                + "\n                sb.insert(mark, '/');"
+                + "\n            }"
+                + "\n        }"
+                + "\n        appendMatrixParameters(sb, values);"
+                + "\n        return java.net.URI.create(sb.toString());");
+
+        JMethod $appendMatrix = $template.method(JMod.NONE, URI.class, "appendMatrix");
+        $appendMatrix.param(URI.class, "uri");
+        $appendMatrix.param(Object[].class, "values");
+        $appendMatrix.body().directStatement(
+                  "StringBuilder sb = new StringBuilder(uri.toString());"
+                + "\n        appendMatrixParameters(sb, values);"
+                + "\n        return java.net.URI.create(sb.toString());");
+
+        JMethod $appendMatrixParameters = $template.method(JMod.PRIVATE, codeModel.VOID, "appendMatrixParameters");
+        $appendMatrixParameters.param(StringBuilder.class, "sb");
+        $appendMatrixParameters.param(Object[].class, "values");
+        $appendMatrixParameters.body().directStatement(
+                  "for (int i = _matrixStart; i < _names.length; i++) {"
+                + "\n            Object value = values[i];"
+                + "\n            if (value instanceof java.util.Collection) {"
+                + "\n                for (Object next : (java.util.Collection<?>) value) {"
+                + "\n                    sb.append(';').append(_names[i]).append('=');"
+                + "\n                    encode(sb, next);"
+                + "\n                }"
+                + "\n            } else if (value != null) {"
+                + "\n                sb.append(';').append(_names[i]).append('=');"
+                + "\n                encode(sb, value);"
+                + "\n            }"
+                + "\n        }");
+        
+        // Percent encode in the same way as PathSegment
+        JMethod $encode = $template.method(JMod.PRIVATE | JMod.STATIC, codeModel.VOID, "encode");
+        JVar $sb = $encode.param(StringBuilder.class, "sb");
+        JVar $value = $encode.param(Object.class, "value");
+        $encode.body().staticInvoke(percentEncodingType(), "append").arg($sb).arg(
+                codeModel.ref(String.class).staticInvoke("valueOf").arg($value));
+        
+        return $template;
+    }
+
+    /**
+     * Copy, once per package, the source of {@link PercentEncoding} so that
+     * the generated templates encode values exactly as {@link PathSegment}
+     * does without depending on this library at runtime.
+     * @return the copied type.
+     */
+    private JClass percentEncodingType()
+    {
+        String name = PercentEncoding.class.getSimpleName();
+        for (Iterator<JResourceFile> it = pkg.propertyFiles(); it.hasNext(); ) {
+            JResourceFile next = it.next();
+            if (next instanceof JStaticJavaFile && next.name().equals(name + ".java")) {
+                return ((JStaticJavaFile) next).asClass();
+            }
+        }
+        JStaticJavaFile $file = new JStaticJavaFile(pkg, name,
+                PercentEncoding.class.getResource(name + ".java"), null);
+        pkg.addResourceFile($file);
+        return $file.asClass();
+    }
+    
+    /**
+     * Find the single list of child elements in a class generated by XJC,
+     * the items returned one at a time by a streaming method.
+     * @param type the class generated for the output representation.
+     * @return the field, or null if there isn't exactly one list of elements
+     *   of a known type.
+     */
+    private JFieldVar getRepeatedElement(JDefinedClass type)
+    {
+        JFieldVar found = null;
+        for (JFieldVar field : type.fields().values()) {
+            if (!(field.type() instanceof JClass)
+                    || !field.type().erasure().fullName().equals(List.class.getName())) {
+                continue;
+            }
+            List<JClass> typeParameters = ((JClass) field.type()).getTypeParameters();
+            if (typeParameters.size() != 1) {
+                continue;
+            }
+            // Mixed content, wildcards and nillable elements can't be 
+            // unmarshalled as a single type
+            String itemClass = typeParameters.get(0).erasure().fullName();
+            if (found != null
+                    || itemClass.equals(Object.class.getName())
+                    || itemClass.equals(JAXBElement.class.getName())) {
+                return null;
+            }
+            found = field;
+        }
+        return found;
+    }
+
+    /**
+     * Work out the local name of the elements held in a list field of a class
+     * generated by XJC.
+     * @param field the list field.
+     * @return the name given by <code>@XmlElement</code> or else the field 
+     *   name, or null if the field is mapped in any other way.
+     */
+    private String getElementName(JFieldVar field)
+    {
+        String name = field.name();
+        
+        // As in generateMethodDecl the annotations are only available
+        // through reflection
+        try
+        {
+            Field annotationClassField = JAnnotationUse.class.getDeclaredField("clazz");
+            annotationClassField.setAccessible(true);
+            Field memberValuesField = JAnnotationUse.class.getDeclaredField("memberValues");
+            memberValuesField.setAccessible(true);
+            Field annotationsField = JVar.class.getDeclaredField("annotations");
+            annotationsField.setAccessible(true);
+            List<JAnnotationUse> annotations = (List<JAnnotationUse>) annotationsField.get(field);
+            if (annotations == null) {
+                return name;
+            }
+            for (JAnnotationUse use : annotations)
+            {
+                String annotationClass = ((JClass)annotationClassField.get(use)).fullName();
+                if (annotationClass.equals(Generated.class.getName())) {
+                    continue;
+                }
+                if (!annotationClass.equals(XmlElement.class.getName())) {
+                    return null;
+                }
+                Map<String, JAnnotationValue> members = 
+                        (Map<String, JAnnotationValue>) memberValuesField.get(use);
+                JAnnotationValue value = members != null ? members.get("name") : null;
+                if (value != null) {
+                    // Generates the quoted string literal
+                    StringWriter sw = new StringWriter();
+                    value.generate(new JFormatter(sw));
+                    String literal = sw.toString();
+                    if (literal.indexOf('\\') != -1) {
+                        return null;
+                    }
+                    name = literal.substring(1, literal.length() - 1);
+                }
+            }
+            return name;
+        }
+        catch (Exception ex)
+        {
+            parameters.getMessageListener().warning("Internal error", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Generate, once per package, the iterator returned by streaming methods
+     * that reads the child elements of a response one at a time.
+     * @return the iterator type.
+     */
+    private JClass elementIteratorType()
+    {
+        JDefinedClass $iterator;
+        try {
+            $iterator = pkg._class(JMod.PUBLIC | JMod.FINAL, "ElementIterator");
+        } catch (JClassAlreadyExistsException ex) {
+            return ex.getExistingClass();
+        }
+        $iterator.javadoc().append(Wadl2JavaMessages.ELEMENT_ITERATOR());
+        JTypeVar $t = $iterator.generify("T");
+        $iterator._implements(codeModel.ref(Iterator.class).narrow($t));
+        $iterator._implements(Closeable.class);
+
+        JClass $jaxbContext = codeModel.ref("javax.xml.bind.JAXBContext");
+        JClass $inputFactory = codeModel.ref("javax.xml.stream.XMLInputFactory");
+        // Share the context of the resolver, if there is one, rather than
+        // keeping another for each item type
+        JClass $resolver = jaxbContextResolverType();
+        String createContext;
+        if ($resolver != null) {
+            createContext = 
+                  "javax.xml.bind.JAXBContext context = new " + $resolver.name() + "().getContext(type);"
+                + "\n            if (context == null) {"
+                + "\n                context = javax.xml.bind.JAXBContext.newInstance(type);"
+                + "\n            }";
+        } else {
+            JClass $contexts = codeModel.ref("java.util.concurrent.ConcurrentMap").narrow(codeModel.ref(Object.class), $jaxbContext);
+            $iterator.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, $contexts, "CONTEXTS",
+                    JExpr._new(codeModel.ref("java.util.concurrent.ConcurrentHashMap").narrow(codeModel.ref(Object.class), $jaxbContext)));
+            createContext = 
+                  "javax.xml.bind.JAXBContext context = CONTEXTS.get(type);"
+                + "\n            if (context == null) {"
+                + "\n                context = javax.xml.bind.JAXBContext.newInstance(type);"
+                + "\n                CONTEXTS.putIfAbsent(type, context);"
+                + "\n            }";
+        }
+        $iterator.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, $inputFactory, "INPUT_FACTORY",
+                $inputFactory.staticInvoke("newInstance"));
+        // The response comes from another server, so don't follow any DTD
+        $iterator.init().directStatement(
+                  "INPUT_FACTORY.setProperty(javax.xml.stream.XMLInputFactory.SUPPORT_DTD, false);"
+                + "\n        INPUT_FACTORY.setProperty(javax.xml.stream.XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);");
+        
+        $iterator.field(JMod.PRIVATE | JMod.FINAL, InputStream.class, "_in");
+        $iterator.field(JMod.PRIVATE | JMod.FINAL, codeModel.ref(Class.class).narrow($t), "_type");
+        $iterator.field(JMod.PRIVATE | JMod.FINAL, String.class, "_name");
+        $iterator.field(JMod.PRIVATE | JMod.FINAL, codeModel.ref("javax.xml.bind.Unmarshaller"), "_unmarshaller");
+        $iterator.field(JMod.PRIVATE | JMod.FINAL, codeModel.ref("javax.xml.stream.XMLStreamReader"), "_reader");
+        $iterator.field(JMod.PRIVATE, int.class, "_depth");
+        $iterator.field(JMod.PRIVATE, boolean.class, "_atItem");
+
+        JMethod $ctor = $iterator.constructor(JMod.NONE);
+        $ctor.param(InputStream.class, "in");
+        $ctor.param(codeModel.ref(Class.class).narrow($t), "type");
+        $ctor.param(String.class, "name");
+        $ctor.body().directStatement(
+                  "_in = in;"
+                + "\n        _type = type;"
+                + "\n        _name = name;"
+                + "\n        try {"
+                + "\n            " + createContext
+                + "\n            _unmarshaller = context.createUnmarshaller();"
+                + "\n            _reader = INPUT_FACTORY.createXMLStreamReader(in);"
+                + "\n        } catch (javax.xml.bind.JAXBException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        } catch (javax.xml.stream.XMLStreamException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        }");
+
+        // Move on to the next child of the document element with the right
+        // name, closing the stream at the end of the document
+        JMethod $hasNext = $iterator.method(JMod.PUBLIC, boolean.class, "hasNext");
+        $hasNext.body().directStatement(
+                  "try {"
+                + "\n            while (!_atItem) {"
+                + "\n                if (!_reader.hasNext()) {"
+                + "\n                    close();"
+                + "\n                    return false;"
+                + "\n                }"
+                + "\n                advance(_reader.next());"
+                + "\n            }"
+                + "\n            return true;"
+                + "\n        } catch (javax.xml.stream.XMLStreamException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        } catch (java.io.IOException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        }");
+
+        // Unmarshalling leaves the reader on the event after the element
+        JMethod $next = $iterator.method(JMod.PUBLIC, $t, "next");
+        $next.body().directStatement(
+                  "if (!hasNext()) {"
+                + "\n            throw new java.util.NoSuchElementException();"
+                + "\n        }"
+                + "\n        try {"
+                + "\n            T item = _unmarshaller.unmarshal(_reader, _type).getValue();"
+                + "\n            _depth--;"
+                + "\n            _atItem = false;"
+                + "\n            advance(_reader.getEventType());"
+                + "\n            return item;"
+                + "\n        } catch (javax.xml.bind.JAXBException ex) {"
+                + "\n            throw new javax.xml.bind.DataBindingException(ex);"
+                + "\n        }");
+
+        JMethod $advance = $iterator.method(JMod.PRIVATE, codeModel.VOID, "advance");
+        $advance.param(int.class, "event");
+        $advance.body().directStatement(
+                  "if (event == javax.xml.stream.XMLStreamConstants.START_ELEMENT) {"
+                + "\n            _depth++;"
+                + "\n            _atItem = _depth == 2 && _name.equals(_reader.getLocalName());"
+                + "\n        } else if (event == javax.xml.stream.XMLStreamConstants.END_ELEMENT) {"
+                + "\n            _depth--;"
+                + "\n        }");
+
+        JMethod $remove = $iterator.method(JMod.PUBLIC, codeModel.VOID, "remove");
+        $remove.body()._throw(JExpr._new(codeModel.ref(UnsupportedOperationException.class)));
+
+        JMethod $close = $iterator.method(JMod.PUBLIC, codeModel.VOID, "close");
+        $close._throws(java.io.IOException.class);
+        $close.body().directStatement(
+                  "try {"
+                + "\n            _reader.close();"
+                + "\n        } catch (javax.xml.stream.XMLStreamException ex) {"
+                + "\n            throw new java.io.IOException(ex);"
+                + "\n        } finally {"
+                + "\n            _in.close();"
+                + "\n        }");
+
+        return $iterator;
+    }
+    
     /**
      * For a given path segment generate the correct parameters.
      *
@@ -918,15 +1789,13 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                     FaultNode fn = method.getFaults().getFirst(statusCode);
                     if (fn.getElement()!=null) {
                         
-                        
-                        JType rawType = (JClass)getTypeFromElement(fn.getElement());
+                        // The exception only reads the fault info when
+                        // it is asked for
                         JClass exception = generateExceptionClass(fn);
 
                         caseBody._throw(
                         JExpr._new(exception)
                                 .arg($response)
-                                .arg($response.invoke(responseGetEntityMethod())
-                                        .arg(toClassLiteral(rawType)))
                                 );
                     } else {
                         
@@ -1235,7 +2104,46 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             RepresentationNode outputRep, 
             MethodType methodType,
             boolean isAbstract) {
+        generateMethodDecl(exceptionMap, method, includeOptionalParams, inputRep, outputRep, methodType, isAbstract, Variant.BLOCKING);
+        if (parameters.isAsyncMethods() && getAsyncProcessInvocation()!=null) {
+            generateMethodDecl(exceptionMap, method, includeOptionalParams, inputRep, outputRep, methodType, isAbstract, Variant.ASYNC);
+        }
+        if (parameters.isStreamingMethods() && methodType == MethodType.JAXB_MAPPING) {
+            generateMethodDecl(exceptionMap, method, includeOptionalParams, inputRep, outputRep, methodType, isAbstract, Variant.STREAMING);
+        }
+    }
+
+    /**
+     * The forms of each generated Java method.
+     */
+    private enum Variant {
+        /** Waits for and returns the whole response. */
+        BLOCKING,
+        /** 
+         * Has <code>Async</code> on the end of the name and returns a 
+         * CompletionStage rather than throwing the fault exceptions. 
+         */
+        ASYNC,
+        /** 
+         * Has <code>Stream</code> on the end of the name and returns the 
+         * repeated child elements of the response one at a time.
+         */
+        STREAMING
+    }
+
+    /**
+     * Generate one variant of a Java method.
+     * 
+     * @param variant the form of the method.
+     */
+    private void generateMethodDecl(Map<JType, JDefinedClass> exceptionMap,
+            MethodNode method, boolean includeOptionalParams, RepresentationNode inputRep,
+            RepresentationNode outputRep, 
+            MethodType methodType,
+            boolean isAbstract,
+            Variant variant) {
         
+        boolean async = variant == Variant.ASYNC;
         boolean isJAXBMapping = methodType == MethodType.JAXB_MAPPING;
         boolean isJSONPOJOMapping = methodType == MethodType.JSON_POJO_MAPPING;
         // check if JAXB_MAPPING can be used with available information
@@ -1364,19 +2272,48 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             }
         }
         
+        // a streaming method needs a single list of child elements to return
+        JClass itemType = null;
+        String itemName = null;
+        if (variant == Variant.STREAMING) {
+            JFieldVar $items = outputRep != null && returnType instanceof JDefinedClass
+                    ? getRepeatedElement((JDefinedClass) returnType) : null;
+            itemName = $items != null ? getElementName($items) : null;
+            if (itemName == null)
+                return;
+            itemType = ((JClass) $items.type()).getTypeParameters().get(0);
+        }
+        
         // generate a name for the method 
         String methodName = getMethodName(method, inputRep, outputRep, isJAXBMapping || isJSONPOJOMapping ? returnType : null, clientResponseClientType());
+        if (async)
+            methodName += "Async";
+        else if (variant == Variant.STREAMING)
+            methodName += "Stream";
         
         // create the method
-        JMethod $genMethod = $class.method(JMod.PUBLIC, returnType, methodName);
+        JClass completionStage = codeModel.ref("java.util.concurrent.CompletionStage");
+        JType methodReturnType = returnType;
+        if (async)
+            methodReturnType = completionStage.narrow(returnType.boxify());
+        else if (variant == Variant.STREAMING)
+            methodReturnType = elementIteratorType().narrow(itemType);
+        JMethod $genMethod = $class.method(JMod.PUBLIC, methodReturnType, methodName);
         javaDoc.generateMethodDoc(method, $genMethod);
+        if (async)
+            $genMethod.javadoc().append(Wadl2JavaMessages.ASYNC_METHOD_DOC());
+        else if (variant == Variant.STREAMING)
+            $genMethod.javadoc().append(Wadl2JavaMessages.STREAMING_METHOD_DOC(itemName));
         if (outputRep != null)
             javaDoc.generateReturnDoc(outputRep, $genMethod);
 
         
-        // add throws for any required exceptions, Client throws far fewer exception
-        for (JDefinedClass $ex: exceptionMap.values()) {
-            $genMethod._throws($ex);
+        // add throws for any required exceptions, Client throws far fewer exception,
+        // the asynchronous variant completes the stage with them instead
+        if (!async) {
+            for (JDefinedClass $ex: exceptionMap.values()) {
+                $genMethod._throws($ex);
+            }
         }
         
         // add a parameter for the input representation (if required)
@@ -1412,13 +2349,17 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
         //
         
         JVar $genericMethodParameter = null;
+        JClass resultType = returnType.boxify();
         if (genericReturnType) {
             JTypeVar $genericParameter = $genMethod.generify("T");
-            $genMethod.type($genericParameter);
+            resultType = $genericParameter;
+            $genMethod.type(async ? completionStage.narrow($genericParameter) : $genericParameter);
             JClass baseParameter = methodType == MethodType.CLASS ? codeModel.ref(Class.class)
                         : genericTypeType();
             JClass specificParameter = baseParameter.narrow($genericParameter);
+            // The asynchronous variant reads the entity in a callback
             $genericMethodParameter = $genMethod.param(
+                    async ? JMod.FINAL : JMod.NONE,
                     specificParameter, 
                     "returnType");
         }
@@ -1438,11 +2379,35 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             JBlock $methodBody = $genMethod.body();
             JClass mapOfString = codeModel.ref(HashMap.class).narrow(String.class, Object.class);
                        
-            // codegen : UriBuilder localUriBuilder = $uriBuilder.clone();
-            JVar $localUriBuilder = $methodBody.decl(
-                    $uriBuilder.type(),
-                    "localUriBuilder", 
-                    $uriBuilder.invoke("clone"));
+            // With a compiled template the path and matrix parameters are
+            // already in the resolved URI, so we only need a builder if
+            // there are query parameters to add
+            boolean precompiled = $compiledTemplate!=null;
+            boolean hasQueryParameters = false;
+            for (Param q: params) {
+                if (!includeOptionalParams && q.isRequired() == Boolean.FALSE && q.getFixed()==null)
+                    continue;
+                if (q.getStyle() == ParamStyle.QUERY) {
+                    hasQueryParameters = true;
+                }
+            }
+            
+            JVar $localUriBuilder = null;
+            if (!precompiled) {
+                // codegen : UriBuilder localUriBuilder = $uriBuilder.clone();
+                $localUriBuilder = $methodBody.decl(
+                        $uriBuilder.type(),
+                        "localUriBuilder", 
+                        $uriBuilder.invoke("clone"));
+            }
+            else if (hasQueryParameters) {
+                // codegen : UriBuilder localUriBuilder = UriBuilder.fromUri(resolveUri());
+                $localUriBuilder = $methodBody.decl(
+                        $uriBuilder.type(),
+                        "localUriBuilder", 
+                        codeModel.ref(UriBuilder.class).staticInvoke("fromUri")
+                            .arg(JExpr.invoke($resolveUri)));
+            }
 
             // Process query parmaeters
             // codegen : localUriBuilder = localUriBuilder.queryParam(...);
@@ -1453,7 +2418,7 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
                 // Only process matrix parameters on current path segment
                 //
                 boolean matrix = q.getStyle() == ParamStyle.MATRIX;
-                if (matrix && !matrixOnOwningResource.contains(q)) {
+                if (matrix && (precompiled || !matrixOnOwningResource.contains(q))) {
                     continue;
                 }
                 
@@ -1521,12 +2486,22 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             //
             
             // codegen WebResource resource = uriBuilder.buildFromMap(_templateMatrixParameterValue);
+            JExpression $resourceUri;
+            if (!precompiled) {
+                $resourceUri = $localUriBuilder.invoke("buildFromMap").
+                       arg($templateMatrixParamValMap);
+            }
+            else if (hasQueryParameters) {
+                $resourceUri = $localUriBuilder.invoke("build");
+            }
+            else {
+                $resourceUri = JExpr.invoke($resolveUri);
+            }
             JVar $resource = $methodBody.decl(
                     resourceType(),
                     "resource", 
                     $clientReference.invoke(resourceFromClientMethod()).arg(
-                    $localUriBuilder.invoke("buildFromMap").
-                       arg($templateMatrixParamValMap)));
+                    $resourceUri));
             
             // Create the resouce builder entry
             //
@@ -1570,13 +2545,15 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             // Now deal with the method body
             
             generateBody(method,isJAXBMapping, exceptionMap, outputRep, 
-                    $genericMethodParameter, wrapInputTypeInJAXBElement, inputType, returnType, $resourceBuilder, inputRep, $methodBody);
+                    $genericMethodParameter, wrapInputTypeInJAXBElement, inputType, returnType, 
+                    variant, variant == Variant.STREAMING ? itemType : resultType, itemName,
+                    $resourceBuilder, inputRep, $methodBody);
         }
     }
 
     
     
-    private JExpression toClassLiteral(JType type)
+    protected JExpression toClassLiteral(JType type)
     {
         if (type instanceof JClass) {
             return JExpr.dotclass((JClass)type);
@@ -1616,6 +2593,34 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             final JType returnType, 
             final JVar $resourceBuilder, 
             final RepresentationNode inputRep, final JBlock $methodBody)
+    {
+        generateBody(method, isJAXB, exceptionMap, outputRep, $genericMethodParameter,
+                wrapInputTypeInJAXBElement, inputType, returnType, Variant.BLOCKING, null, null,
+                $resourceBuilder, inputRep, $methodBody);
+    }
+
+    /**
+     * Generate the method body for one variant of a method.
+     *
+     * @param variant the form of the method.
+     * @param resultType the type the CompletionStage of an asynchronous 
+     * method completes with, or the type of each item of a streaming method.
+     * @param itemName the local name of the child elements of a streaming 
+     * method.
+     */
+    private void generateBody(final MethodNode method, 
+            final boolean isJAXB,
+            final Map<JType, 
+            JDefinedClass> exceptionMap, final RepresentationNode outputRep, 
+            final JVar $genericMethodParameter,
+            final boolean wrapInputTypeInJAXBElement,
+            final JType inputType, 
+            final JType returnType, 
+            final Variant variant,
+            final JClass resultType,
+            final String itemName,
+            final JVar $resourceBuilder, 
+            final RepresentationNode inputRep, final JBlock $methodBody)
     {
         // This code is quite different for jersey and jax-rs 2.0
         // so we are going to collect these values as required and
@@ -1682,6 +2687,26 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             }
         }
         
+        if (variant == Variant.ASYNC) {
+            $methodBody._return(getAsyncProcessInvocation().create(
+                    method, $methodBody, $resourceBuilder, methodString, inputRep, returnType, 
+                    resultType, $returnTypeExpr, $entityExpr));
+            return;
+        }
+        else if (variant == Variant.STREAMING) {
+            // The faults are still checked first, then the raw stream is
+            // handed to the iterator rather than being read in one go
+            JClass $inputStream = codeModel.ref(InputStream.class);
+            JExpression executeDetails[] = createProcessInvocation(
+                    method, $methodBody, $resourceBuilder, methodString, inputRep, $inputStream, 
+                    JExpr.dotclass($inputStream), $entityExpr);
+            $methodBody._return(JExpr._new(elementIteratorType().narrow(resultType))
+                    .arg(executeDetails[0])
+                    .arg(JExpr.dotclass(resultType))
+                    .arg(JExpr.lit(itemName)));
+            return;
+        }
+        
         // Allow JAX-RS to tag on
         JExpression executeDetails[] = createProcessInvocation(
                method, $methodBody, $resourceBuilder, methodString, inputRep, returnType, $returnTypeExpr, $entityExpr);
@@ -1886,10 +2911,14 @@ public abstract class BaseResourceClassGenerator implements ResourceClassGenerat
             
             // Allows chained method settings
             // codegen: return new <this>(_client,_uriBuilder,copy);
-            $setterBody._return(JExpr._new($impl)
+            JInvocation $copy = JExpr._new($impl)
                  .arg($clientReference)
                  .arg($localUriBuilder)
-                 .arg($copyMap));
+                 .arg($copyMap);
+            if ($compiledTemplate!=null) {
+                $copy.arg($baseUri);
+            }
+            $setterBody._return($copy);
         }
     }
 }
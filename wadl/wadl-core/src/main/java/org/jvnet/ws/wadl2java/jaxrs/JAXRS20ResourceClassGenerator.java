@@ -17,9 +17,11 @@ import org.jvnet.ws.wadl2java.Wadl2JavaMessages;
 import org.jvnet.ws.wadl2java.common.BaseResourceClassGenerator;
 
 import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JCatchBlock;
 import com.sun.codemodel.JClass;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JConditional;
 import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JExpr;
 import com.sun.codemodel.JExpression;
@@ -27,6 +29,7 @@ import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
 import com.sun.codemodel.JPackage;
+import com.sun.codemodel.JTryBlock;
 import com.sun.codemodel.JType;
 import com.sun.codemodel.JVar;
 import org.jvnet.ws.wadl2java.Wadl2Java;
@@ -199,9 +202,121 @@ public class JAXRS20ResourceClassGenerator
             return new JExpression[] {$fetchEntity, $response};
         }
    }
+
+    @Override
+    protected AsyncProcessInvocation getAsyncProcessInvocation() {
+        return new AsyncProcessInvocation() {
+            public JExpression create(MethodNode method, JBlock $methodBody, JVar $resourceBuilder, String methodString, RepresentationNode inputRep, JType returnType, JClass resultType, JExpression $returnTypeExpr, JExpression $entityExpr) {
+                return createAsyncProcessInvocation(method, $methodBody, $resourceBuilder, methodString, inputRep, returnType, resultType, $returnTypeExpr, $entityExpr);
+            }
+        };
+    }
+
+    /**
+     * Complete a future from an InvocationCallback, applying the same fault
+     * mapping as the blocking method.
+     */
+    private JExpression createAsyncProcessInvocation(MethodNode method, JBlock $methodBody, JVar $resourceBuilder, String methodString, RepresentationNode inputRep, JType returnType, JClass resultType, JExpression $returnTypeExpr, JExpression $entityExpr) {
+        // JAX-RS 2.0 has no rx(), so complete a future from a callback
+        JClass $futureType = codeModel.ref("java.util.concurrent.CompletableFuture").narrow(resultType);
+        JVar $result = $methodBody.decl(JMod.FINAL, $futureType, "result", JExpr._new($futureType));
+
+        JDefinedClass $callback = codeModel.anonymousClass(
+                codeModel.ref("javax.ws.rs.client.InvocationCallback").narrow(clientResponseClientType()));
+
+        // The same fault mapping as the blocking method, only the exceptions
+        // complete the future rather than being thrown to the caller
+        JMethod $completed = $callback.method(JMod.PUBLIC, codeModel.VOID, "completed");
+        JVar $response = $completed.param(clientResponseClientType(), "response");
+        JTryBlock $try = $completed.body()._try();
+        JBlock $tryBody = $try.body();
+        generateConditionalForFaultNode(method, $tryBody, $response, returnType, $returnTypeExpr);
+        if (clientResponseClientType() == returnType) {
+            $tryBody.invoke($result, "complete").arg($response);
+        }
+        else {
+            JInvocation $fetchEntity = $response.invoke("readEntity");
+            if ($returnTypeExpr!=null)
+            {
+                $fetchEntity.arg($returnTypeExpr);
+            }
+            
+            JBlock $body = $tryBody;
+            if ($returnTypeExpr instanceof JVar
+                    && ((JVar)$returnTypeExpr).type().erasure() == codeModel._ref(Class.class)) {
+                // As for the blocking method the caller can ask for the Response
+                JVar rType = (JVar)$returnTypeExpr;
+                JConditional _if = $tryBody._if(JExpr.dotclass(clientResponseClientType()).invoke("isAssignableFrom").arg(rType).not());
+                $body = _if._then();
+                _if._else().invoke($result, "complete").arg(rType.invoke("cast").arg($response));
+            }
+            $body.invoke($result, "complete").arg($fetchEntity);
+        }
+        JCatchBlock $catch = $try._catch(codeModel.ref(RuntimeException.class));
+        JVar $ex = $catch.param("ex");
+        $catch.body().invoke($result, "completeExceptionally").arg($ex);
+
+        JMethod $failed = $callback.method(JMod.PUBLIC, codeModel.VOID, "failed");
+        JVar $throwable = $failed.param(Throwable.class, "throwable");
+        $failed.body().invoke($result, "completeExceptionally").arg($throwable);
+
+        JInvocation $execute = $resourceBuilder.invoke("async").invoke("method").arg(methodString);
+        if ($entityExpr!=null)
+        {
+            JClass $entity = codeModel.ref("javax.ws.rs.client.Entity");
+            $execute.arg(
+              $entity.staticInvoke("entity")
+                    .arg($entityExpr)
+                    .arg(JExpr.lit(inputRep.getMediaType())));
+        }
+        $execute.arg(JExpr._new($callback));
+        $methodBody.add($execute);
+        
+        return $result;
+    }
     
 
     
+    @Override
+    protected void generateResponseCacheFilter(JDefinedClass $cache) {
+        $cache._implements(codeModel.ref("javax.ws.rs.client.ClientRequestFilter"));
+        $cache._implements(codeModel.ref("javax.ws.rs.client.ClientResponseFilter"));
+
+        // The key and the entry being revalidated go along with the request
+        JMethod $request = $cache.method(JMod.PUBLIC, codeModel.VOID, "filter");
+        $request._throws(java.io.IOException.class);
+        $request.param(codeModel.ref("javax.ws.rs.client.ClientRequestContext"), "request");
+        $request.body().directStatement(
+                  "String key = key(request.getMethod(), request.getUri(), request.getHeaders());"
+                + "\n        if (key != null) {"
+                + "\n            request.setProperty(ResponseCache.class.getName() + \".key\", key);"
+                + "\n            request.setProperty(ResponseCache.class.getName() + \".entry\","
+                + "\n                    revalidate(key, request.getHeaders()));"
+                + "\n        }");
+
+        JMethod $response = $cache.method(JMod.PUBLIC, codeModel.VOID, "filter");
+        $response._throws(java.io.IOException.class);
+        $response.param(codeModel.ref("javax.ws.rs.client.ClientRequestContext"), "request");
+        $response.param(codeModel.ref("javax.ws.rs.client.ClientResponseContext"), "response");
+        $response.body().directStatement(
+                  "String key = (String) request.getProperty(ResponseCache.class.getName() + \".key\");"
+                + "\n        if (key == null) {"
+                + "\n            return;"
+                + "\n        }"
+                + "\n        Entry entry = (Entry) request.getProperty(ResponseCache.class.getName() + \".entry\");"
+                + "\n        if (response.getStatus() == 304 && entry != null) {"
+                + "\n            response.setStatus(200);"
+                + "\n            response.setEntityStream(restore(entry, response.getHeaders()));"
+                + "\n        } else if (response.getStatus() == 200 && response.hasEntity()) {"
+                + "\n            response.setEntityStream(store(key,"
+                + "\n                    response.getHeaderString(\"ETag\"),"
+                + "\n                    response.getHeaderString(\"Last-Modified\"),"
+                + "\n                    response.getHeaderString(\"Cache-Control\"),"
+                + "\n                    response.getHeaderString(\"Content-Type\"),"
+                + "\n                    response.getEntityStream()));"
+                + "\n        }");
+    }
+    
     
     /**
      * Invoked when we need to throw a generic failure exception because
@@ -228,6 +343,7 @@ public class JAXRS20ResourceClassGenerator
         JType rawType = getTypeFromElement(f.getElement());
         JType detailType = rawType==null ? codeModel._ref(Object.class) : rawType;
         JVar $detailField = $exCls.field(JMod.PRIVATE, detailType, "m_faultInfo");
+        JVar $detailReadField = $exCls.field(JMod.PRIVATE, codeModel.BOOLEAN, "m_faultInfoRead");
         // Build a constructor
         JMethod $ctor = $exCls.constructor(JMod.PUBLIC);
 
@@ -239,12 +355,27 @@ public class JAXRS20ResourceClassGenerator
         //
         $ctorBody.directStatement("super(response);");
         $ctorBody.assign($detailField, $detail);
+        $ctorBody.assign($detailReadField, JExpr.TRUE);
+        
+        // The constructor used by the generated methods, the entity is 
+        // buffered so the connection is released but only unmarshalled
+        // if the fault info is asked for
+        JMethod $lazyCtor = $exCls.constructor(JMod.PUBLIC);
+        JVar $lazyResponse = $lazyCtor.param(clientResponseClientType(), "response");
+        $lazyCtor.body().directStatement("super(response);");
+        $lazyCtor.body().invoke($lazyResponse, "bufferEntity");
+        
         // Add getter for the body payload
         JMethod $faultInfoGetter = $exCls.method(JMod.PUBLIC, detailType, "getFaultInfo");
+        JBlock $read = $faultInfoGetter.body()._if($detailReadField.not())._then();
+        $read.assign($detailField, 
+                JExpr.invoke("getResponse").invoke(responseGetEntityMethod()).arg(toClassLiteral(detailType)));
+        $read.assign($detailReadField, JExpr.TRUE);
         $faultInfoGetter.body()._return($detailField);
         
         // Override getMessage
         overrideMessageOnException($exCls);
+        overrideStackTraceOnException($exCls);
 
 
         return $exCls;
@@ -289,6 +420,18 @@ public class JAXRS20ResourceClassGenerator
         
         JVar client = body.decl(clientType(), "client", JExpr.invoke($clientInstance));
         
+        // Register the shared JAXBContext, if any, before the customization
+        
+        JExpression $resolver = generateJAXBContextResolver();
+        if ($resolver != null) {
+            body.invoke(client, "register").arg($resolver);
+        }
+        
+        JExpression $cache = generateResponseCache(parentClass);
+        if ($cache != null) {
+            body.invoke(client, "register").arg($cache);
+        }
+        
         // Invoke customization method
         
         body.invoke($custMethod).arg(
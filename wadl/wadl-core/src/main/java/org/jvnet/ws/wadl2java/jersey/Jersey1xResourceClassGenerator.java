@@ -189,6 +189,39 @@ public class Jersey1xResourceClassGenerator
         
    }
 
+    @Override
+    protected void generateResponseCacheFilter(JDefinedClass $cache) {
+        $cache._extends(codeModel.ref("com.sun.jersey.api.client.filter.ClientFilter"));
+
+        JMethod $handle = $cache.method(JMod.PUBLIC, clientResponseClientType(), "handle");
+        $handle._throws(codeModel.ref("com.sun.jersey.api.client.ClientHandlerException"));
+        $handle.param(codeModel.ref("com.sun.jersey.api.client.ClientRequest"), "request");
+        $handle.body().directStatement(
+                  "String key = key(request.getMethod(), request.getURI(), request.getHeaders());"
+                + "\n        Entry entry = key != null ? revalidate(key, request.getHeaders()) : null;"
+                + "\n        com.sun.jersey.api.client.ClientResponse response = getNext().handle(request);"
+                + "\n        if (key == null) {"
+                + "\n            return response;"
+                + "\n        }"
+                + "\n        try {"
+                + "\n            if (response.getStatus() == 304 && entry != null) {"
+                + "\n                response.setStatus(200);"
+                + "\n                response.setEntityInputStream(restore(entry, response.getHeaders()));"
+                + "\n            } else if (response.getStatus() == 200 && response.hasEntity()) {"
+                + "\n                javax.ws.rs.core.MultivaluedMap<String, String> headers = response.getHeaders();"
+                + "\n                response.setEntityInputStream(store(key,"
+                + "\n                        headers.getFirst(\"ETag\"),"
+                + "\n                        headers.getFirst(\"Last-Modified\"),"
+                + "\n                        headers.getFirst(\"Cache-Control\"),"
+                + "\n                        headers.getFirst(\"Content-Type\"),"
+                + "\n                        response.getEntityInputStream()));"
+                + "\n            }"
+                + "\n        } catch (java.io.IOException ex) {"
+                + "\n            throw new com.sun.jersey.api.client.ClientHandlerException(ex);"
+                + "\n        }"
+                + "\n        return response;");
+    }
+
     
     /**
      * Invoked when we need to throw a generic failure exception because
@@ -218,6 +251,7 @@ public class Jersey1xResourceClassGenerator
         JType rawType = getTypeFromElement(f.getElement());
         JType detailType = rawType==null ? codeModel._ref(Object.class) : rawType;
         JVar $detailField = $exCls.field(JMod.PRIVATE, detailType, "m_faultInfo");
+        JVar $detailReadField = $exCls.field(JMod.PRIVATE, codeModel.BOOLEAN, "m_faultInfoRead");
         JVar $responseField = $exCls.field(JMod.PRIVATE, 
                 clientResponseClientType(), "m_response");
         // Build a constructor
@@ -230,9 +264,25 @@ public class Jersey1xResourceClassGenerator
         //
         $ctorBody.directStatement("super(response.getStatus());");
         $ctorBody.assign($detailField, $detail);
+        $ctorBody.assign($detailReadField, JExpr.TRUE);
         $ctorBody.assign($responseField, $response);
+        
+        // The constructor used by the generated methods, the entity is 
+        // buffered so the connection is released but only unmarshalled
+        // if the fault info is asked for
+        JMethod $lazyCtor = $exCls.constructor(JMod.PUBLIC);
+        JVar $lazyResponse = $lazyCtor.param(clientResponseClientType(), "response");
+        JBlock $lazyCtorBody = $lazyCtor.body();
+        $lazyCtorBody.directStatement("super(response.getStatus());");
+        $lazyCtorBody.assign($responseField, $lazyResponse);
+        $lazyCtorBody.invoke($lazyResponse, "bufferEntity");
+        
         // Add getter for the body payload
         JMethod $faultInfoGetter = $exCls.method(JMod.PUBLIC, detailType, "getFaultInfo");
+        JBlock $read = $faultInfoGetter.body()._if($detailReadField.not())._then();
+        $read.assign($detailField, 
+                $responseField.invoke(responseGetEntityMethod()).arg(toClassLiteral(detailType)));
+        $read.assign($detailReadField, JExpr.TRUE);
         $faultInfoGetter.body()._return($detailField);
         // Add getter for the client response
         JMethod $responseGetter = $exCls.method(JMod.PUBLIC, clientResponseClientType(), "getClientResponse");
@@ -240,6 +290,7 @@ public class Jersey1xResourceClassGenerator
         
         // Override getMessage
         overrideMessageOnException($exCls);
+        overrideStackTraceOnException($exCls);
         
         return $exCls;
     }
@@ -281,13 +332,30 @@ public class Jersey1xResourceClassGenerator
                 "cc",
                 JExpr._new(codeModel.ref("com.sun.jersey.api.client.config.DefaultClientConfig")));
         
+        // Register the shared JAXBContext, if any, before the customization
+        
+        JExpression $resolver = generateJAXBContextResolver();
+        if ($resolver != null) {
+            body.add(clientConfig.invoke("getSingletons").invoke("add").arg($resolver));
+        }
+        
         // Invoke customization method
         
         body.invoke($custMethod).arg(clientConfig);
         
-        // Invoke the new instance method
+        // Invoke the new instance method, the response cache, if any, is a
+        // filter on the client rather than part of the configuration
         
-        body._return(JExpr.invoke($clientInstance).arg(clientConfig));
+        JExpression $cache = generateResponseCache(parentClass);
+        if ($cache != null) {
+            JVar client = body.decl(clientType(), "client", 
+                    JExpr.invoke($clientInstance).arg(clientConfig));
+            body.invoke(client, "addFilter").arg($cache);
+            body._return(client);
+        }
+        else {
+            body._return(JExpr.invoke($clientInstance).arg(clientConfig));
+        }
         
         // Popuplate the create client instance method
         
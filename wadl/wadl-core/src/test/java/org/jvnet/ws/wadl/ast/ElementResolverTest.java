@@ -0,0 +1,129 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.ws.wadl.Param;
+import org.jvnet.ws.wadl.Representation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Check references are resolved within and between documents by the
+ * {@link ElementResolver}.
+ */
+public class ElementResolverTest {
+
+    private final URI main = URI.create("http://example.com/main.wadl");
+    private final URI other = URI.create("http://example.com/other.wadl");
+
+    private ElementResolver resolver;
+    private Param local;
+    private Param remote;
+    private Representation representation;
+    private String localId;
+
+    @Before
+    public void addReferences() {
+        resolver = new ElementResolver(null);
+        local = new Param();
+        remote = new Param();
+        representation = new Representation();
+
+        localId = resolver.addReference(main, "p", local);
+        resolver.addReference(main, "rep", representation);
+        resolver.addReference(other, "p", remote);
+        assertThat("Elements without an id are not added",
+                resolver.addReference(main, null, new Param()), nullValue());
+    }
+
+    /**
+     * The same id in two documents refers to different elements.
+     */
+    @Test
+    public void testResolve() throws InvalidWADLException
+    {
+        assertThat(resolver.resolve(main, "#p", new Param()), sameInstance(local));
+        assertThat(resolver.resolve(other, "other.wadl#p", new Param()), sameInstance(remote));
+        assertThat("Unique id from addReference",
+                resolver.get(localId), sameInstance((Object) local));
+    }
+
+    /**
+     * Another spelling of a document refers to the same elements, and
+     * gives the same unique id.
+     */
+    @Test
+    public void testEquivalentSpelling() throws InvalidWADLException
+    {
+        URI spelling = URI.create("HTTP://Example.COM:80/./main.wadl");
+        assertThat(resolver.resolve(spelling, "#p", new Param()), sameInstance(local));
+        assertThat(resolver.addReference(spelling, "p", local), equalTo(localId));
+        assertThat(localId, equalTo("http://example.com/main.wadl#p"));
+    }
+
+    /**
+     * Several references can be resolved relative to the referring document.
+     */
+    @Test
+    public void testResolveAll() throws InvalidWADLException
+    {
+        List<Param> resolved = resolver.resolveAll(main,
+                Arrays.asList("#p", "other.wadl#p", "main.wadl#p"), new Param());
+
+        assertThat(resolved.size(), equalTo(3));
+        assertThat(resolved.get(0), sameInstance(local));
+        assertThat(resolved.get(1), sameInstance(remote));
+        assertThat(resolved.get(2), sameInstance(local));
+    }
+
+    /**
+     * A reference without a fragment in a batch is reported like any other
+     * unresolved reference.
+     */
+    @Test
+    public void testResolveAllFragmentless()
+    {
+        for (String href : Arrays.asList("p", "other.wadl")) {
+            try {
+                resolver.resolveAll(main, Arrays.asList("#p", href), new Param());
+                fail("Should not resolve " + href);
+            } catch (InvalidWADLException ex) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Missing references and references to an element of the wrong type
+     * are both errors.
+     */
+    @Test
+    public void testInvalidReferences()
+    {
+        for (String href : Arrays.asList("#missing", "#rep", "unknown.wadl#p", "p")) {
+            try {
+                resolver.resolve(main, href, new Param());
+                fail("Should not resolve " + href);
+            } catch (InvalidWADLException ex) {
+                // Expected
+            }
+        }
+    }
+}
@@ -105,4 +105,49 @@ public class PathSegmentTest extends TestCase {
         assertEquals(result, "fred//bob/");
     }
     
+    /**
+     * Values are inserted literally even when they look like regular
+     * expression replacement text, and the regular expression of a
+     * parameter doesn't stop it being replaced.
+     */
+    public void testEvaluateSpecialCharacters() throws InvalidWADLException {
+        System.out.println("evaluateSpecialCharacters");
+        Resource r = new Resource();
+        r.setPath("fred/{id: \\d{3}}/{name}");
+        
+        PathSegment instance = new PathSegment(r,null,null);
+        HashMap<String, Object> params = new HashMap<String, Object>();
+        params.put("id", 123);
+        params.put("name", "$1\\x");
+        assertEquals("fred/123/$1\\x", instance.evaluate(params));
+    }
+    
+    /**
+     * The same buffer can be used for several expansions, and values may be
+     * percent encoded.
+     */
+    public void testExpand() throws InvalidWADLException {
+        System.out.println("expand");
+        Resource r = new Resource();
+        r.setPath("fred/{param1}");
+        Param p = new Param();
+        p.setName("param2");
+        p.setStyle(ParamStyle.MATRIX);
+        r.getParam().add(p);
+        
+        PathSegment instance = new PathSegment(r,null,null);
+        HashMap<String, Object> params = new HashMap<String, Object>();
+        params.put("param1", "a b/c");
+        params.put("param2", "d;e");
+        StringBuilder buffer = new StringBuilder();
+        assertEquals("fred/a%20b%2Fc;param2=d%3Be", 
+            instance.expand(params, buffer, true).toString());
+        
+        buffer.setLength(0);
+        params.put("param1", "\u00e9");
+        params.remove("param2");
+        assertEquals("fred/%C3%A9", 
+            instance.expand(params, buffer, true).toString());
+    }
+    
 }
@@ -0,0 +1,120 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.net.URI;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.ws.wadl.Application;
+import org.jvnet.ws.wadl.Method;
+import org.jvnet.ws.wadl.Resource;
+import org.jvnet.ws.wadl.Resources;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+/**
+ * Check the routing rules of the {@link ResourceIndex}.
+ */
+public class ResourceIndexTest {
+
+    private ResourceNode root;
+    private ResourceNode users;
+    private ResourceNode user;
+    private ResourceNode me;
+    private ResourceNode year;
+    private ResourceNode orders;
+    private ResourceIndex index;
+
+    @Before
+    public void createResources() throws InvalidWADLException {
+        Resources resources = new Resources();
+        resources.setBase("http://example.com/api/");
+        root = new ResourceNode(URI.create("http://example.com/"), new Application(), resources);
+
+        users = root.addChild(resource("/users/"), null, null);
+        user = users.addChild(resource("{id}"), null, null);
+        me = users.addChild(resource("me"), null, null);
+        year = users.addChild(resource("{year: \\d{4}}"), null, null);
+        orders = user.addChild(resource("orders/{order}.json"), null, null);
+
+        Method get = new Method();
+        get.setName("GET");
+        new MethodNode(get, me);
+
+        index = new ApplicationNode(new Application(),
+                Collections.singletonList(root)).getResourceIndex();
+    }
+
+    /**
+     * Literal paths are found directly, ignoring any leading or trailing
+     * slash.
+     */
+    @Test
+    public void testLiteralPath()
+    {
+        ResourceIndex.Match match = index.match("/users/me/");
+        assertThat(match.getResource(), sameInstance(me));
+        assertThat(match.getValues().isEmpty(), equalTo(true));
+        assertThat(match.getMethod("GET"), notNullValue());
+        assertThat(match.getMethod("POST"), nullValue());
+
+        assertThat(index.match("users").getResource(), sameInstance(users));
+        assertThat(index.match("").getResource(), sameInstance(root));
+        assertThat("Same match each time for a literal path",
+                index.match("users/me"), sameInstance(match));
+    }
+
+    /**
+     * Template segments are tried after literals, most specific first, and
+     * the values are extracted.
+     */
+    @Test
+    public void testTemplatePath()
+    {
+        ResourceIndex.Match match = index.match("users/fred");
+        assertThat(match.getResource(), sameInstance(user));
+        assertThat(match.getValues().get("id"), equalTo("fred"));
+
+        match = index.match("users/2012");
+        assertThat("Regular expression is more specific",
+                match.getResource(), sameInstance(year));
+        assertThat(match.getValues().get("year"), equalTo("2012"));
+
+        match = index.match("users/fred/orders/42.json");
+        assertThat(match.getResource(), sameInstance(orders));
+        assertThat(match.getValues().get("id"), equalTo("fred"));
+        assertThat(match.getValues().get("order"), equalTo("42"));
+    }
+
+    /**
+     * A literal match that leads nowhere falls back to a template.
+     */
+    @Test
+    public void testBacktracking()
+    {
+        ResourceIndex.Match match = index.match("users/me/orders/1.json");
+        assertThat(match.getResource(), sameInstance(orders));
+        assertThat(match.getValues().get("id"), equalTo("me"));
+
+        assertThat(index.match("users/fred/unknown"), nullValue());
+        assertThat(index.match("other"), nullValue());
+    }
+
+    private static Resource resource(String path) {
+        Resource r = new Resource();
+        r.setPath(path);
+        return r;
+    }
+}
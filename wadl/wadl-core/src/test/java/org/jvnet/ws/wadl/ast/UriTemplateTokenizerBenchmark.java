@@ -0,0 +1,128 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jvnet.ws.wadl.Resource;
+
+/**
+ * Compares the regular expression parsing that {@link PathSegment} used to
+ * do with the {@link UriTemplateTokenizer}, over the paths of a WADL with
+ * many thousands of resources. This is not run as part of the build, run
+ * the main method by hand with the number of resources as an optional
+ * argument.
+ */
+public class UriTemplateTokenizerBenchmark {
+
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        List<String> templates = templates(count);
+
+        System.out.println("Parsing " + count + " resource paths, " + ROUNDS + " rounds");
+        for (int warmup = 0; warmup < 3; warmup++) {
+            regex(templates);
+            tokenizer(templates);
+        }
+
+        long start = System.nanoTime();
+        int regexParams = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            regexParams += regex(templates);
+        }
+        long regexTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int tokenizerParams = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            tokenizerParams += tokenizer(templates);
+        }
+        long tokenizerTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            pathSegments(templates);
+        }
+        long segmentTime = System.nanoTime() - start;
+
+        System.out.println("regex:       " + regexTime / 1000000 + "ms, " + regexParams + " parameters");
+        System.out.println("tokenizer:   " + tokenizerTime / 1000000 + "ms, " + tokenizerParams + " parameters");
+        System.out.println("PathSegment: " + segmentTime / 1000000 + "ms");
+    }
+
+    /**
+     * The paths of a large generated WADL, a mix of plain segments, simple
+     * parameters and parameters constrained by a regular expression.
+     */
+    private static List<String> templates(int count) {
+        List<String> templates = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0:
+                    templates.add("collection" + i);
+                    break;
+                case 1:
+                    templates.add("collection" + i + "/{id" + i + "}");
+                    break;
+                case 2:
+                    templates.add("{parent}/item" + i + "/{id: [0-9]+}");
+                    break;
+                default:
+                    templates.add("{year: \\d{4}}/{month: \\d{2}}/entry" + i);
+                    break;
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * What the PathSegment constructor used to do.
+     */
+    private static int regex(List<String> templates) {
+        int found = 0;
+        for (String template : templates) {
+            Matcher matcher = Pattern.compile("\\{.*?\\}").matcher(template);
+            while (matcher.find()) {
+                String name = matcher.group().replaceAll(
+                    PathSegment.PARAM_WITH_REGEX_PATTERN, PathSegment.PARAM_WITH_REGEX_NAME);
+                found += name.length() > 0 ? 1 : 0;
+            }
+        }
+        return found;
+    }
+
+    private static int tokenizer(List<String> templates) {
+        int found = 0;
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer();
+        for (String template : templates) {
+            tokenizer.reset(template);
+            while (tokenizer.next()) {
+                if (tokenizer.isParameter()) {
+                    found += tokenizer.getName().length() > 0 ? 1 : 0;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static void pathSegments(List<String> templates) throws InvalidWADLException {
+        for (String template : templates) {
+            Resource r = new Resource();
+            r.setPath(template);
+            new PathSegment(r, null, null);
+        }
+    }
+}
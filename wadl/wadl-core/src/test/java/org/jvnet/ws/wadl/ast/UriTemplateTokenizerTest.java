@@ -0,0 +1,103 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+/**
+ * Check the tokens produced by the {@link UriTemplateTokenizer}.
+ */
+public class UriTemplateTokenizerTest {
+
+    /**
+     * Literals and simple parameters.
+     */
+    @Test
+    public void testSimpleTemplate()
+    {
+        assertThat(tokens("fred/{param1}/bob/{param2}"),
+                equalTo(Arrays.asList("fred/", "{param1}", "/bob/", "{param2}")));
+        assertThat(tokens("{a}{b}"),
+                equalTo(Arrays.asList("{a}", "{b}")));
+        assertThat(tokens(""), equalTo(Arrays.<String>asList()));
+        assertThat(tokens(null), equalTo(Arrays.<String>asList()));
+    }
+
+    /**
+     * The regular expression of a parameter may contain braces, and both the
+     * name and the expression are trimmed.
+     */
+    @Test
+    public void testRegularExpression()
+    {
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer("users/{ id : \\d{3}}/orders");
+
+        assertThat(tokenizer.next(), equalTo(true));
+        assertThat(tokenizer.isParameter(), equalTo(false));
+        assertThat(tokenizer.getLiteral(), equalTo("users/"));
+
+        assertThat(tokenizer.next(), equalTo(true));
+        assertThat(tokenizer.isParameter(), equalTo(true));
+        assertThat(tokenizer.getName(), equalTo("id"));
+        assertThat(tokenizer.getRegex(), equalTo("\\d{3}"));
+        assertThat(tokenizer.getText(), equalTo("{ id : \\d{3}}"));
+        assertThat(tokenizer.getStart(), equalTo(6));
+
+        assertThat(tokenizer.next(), equalTo(true));
+        assertThat(tokenizer.getLiteral(), equalTo("/orders"));
+        assertThat(tokenizer.next(), equalTo(false));
+    }
+
+    /**
+     * A brace that is never closed is just text, but doesn't hide any
+     * later parameters.
+     */
+    @Test
+    public void testUnterminated()
+    {
+        assertThat(tokens("a{b"), equalTo(Arrays.asList("a{b")));
+        assertThat(tokens("{a{b}"), equalTo(Arrays.asList("{a", "{b}")));
+    }
+
+    /**
+     * The same instance can be used for another template.
+     */
+    @Test
+    public void testReset()
+    {
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer("{a}");
+        assertThat(tokenizer.next(), equalTo(true));
+        tokenizer.reset("b/{c}");
+        assertThat(tokenizer.next(), equalTo(true));
+        assertThat(tokenizer.getLiteral(), equalTo("b/"));
+        assertThat(tokenizer.next(), equalTo(true));
+        assertThat(tokenizer.getName(), equalTo("c"));
+        assertThat(tokenizer.getRegex(), nullValue());
+        assertThat(tokenizer.next(), equalTo(false));
+    }
+
+    private static List<String> tokens(String template) {
+        List<String> tokens = new ArrayList<String>();
+        UriTemplateTokenizer tokenizer = new UriTemplateTokenizer(template);
+        while (tokenizer.next()) {
+            tokens.add(tokenizer.getText());
+        }
+        return tokens;
+    }
+}
@@ -4,17 +4,24 @@
  */
 package org.jvnet.ws.wadl.ast;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.ArrayList;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.jvnet.ws.wadl.util.MessageListener;
 import org.w3c.dom.Element;
 import org.xml.sax.InputSource;
 
 import static org.hamcrest.MatcherAssert.assertThat; 
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
 
 
 /**
@@ -23,6 +30,9 @@ import static org.hamcrest.Matchers.*;
  */
 public class WadlAstBuilderTest {
      
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     
     /**
      * Whilst investigating a bug, make sure that the AST is properly reporting
@@ -76,4 +86,254 @@ public class WadlAstBuilderTest {
         
     }
     
+    /**
+     * A description already in the 2009 namespace is read without the upgrade
+     * transform, check that we still have the location information.
+     */
+    @Test
+    public void testCurrentNamespaceKeepsLocation() throws InvalidWADLException, IOException, URISyntaxException
+    {
+        WadlAstBuilder builder = createBuilder();
+        
+        ApplicationNode an = 
+                builder.buildAst(WadlAstBuilderTest.class.getResource("Simple.wadl").toURI());
+        List<MethodNode> methods = an.getResources().get(0).getChildResources().get(0).getMethods();
+        
+        assertThat("Only one method",
+                methods.size(), equalTo(1));
+        assertThat("Location is available",
+                methods.get(0).getLocation(), notNullValue());
+        assertThat("Line of the method element",
+                methods.get(0).getLocation().getLineNumber(), equalTo(5));
+        assertThat("System id of the document",
+                methods.get(0).getLocation().getSystemId(), endsWith("Simple.wadl"));
+    }
+    
+    /**
+     * A compacted tree keeps its content and locations once the JAXB
+     * elements are dropped, but can no longer be modified.
+     */
+    @Test
+    public void testCompact() throws InvalidWADLException, IOException, URISyntaxException
+    {
+        ApplicationNode an = createBuilder().buildAst(
+                WadlAstBuilderTest.class.getResource("SoapUIYahooSearch.wadl").toURI());
+        assertThat("Compact returns the same tree",
+                an.compact(true), sameInstance(an));
+        
+        ResourceNode resource = an.getResources().get(0).getChildResources().get(0);
+        List<MethodNode> methods = resource.getMethods();
+        assertThat("Only one method",
+                methods.size(), equalTo(1));
+        assertThat("Only one fault",
+                methods.get(0).getFaults().size(), equalTo(1));
+        assertThat("Location is still available",
+                methods.get(0).getLocation(), notNullValue());
+        assertThat("Location of the resource",
+                resource.getLocation(), notNullValue());
+        
+        RepresentationNode output = methods.get(0).getSupportedOutputs().values().iterator().next().get(0);
+        assertThat("Media type is interned",
+                output.getMediaType(), sameInstance(output.getMediaType().intern()));
+        
+        try {
+            resource.getChildResources().add(resource);
+            fail("Compacted tree should not be modifiable");
+        } catch (UnsupportedOperationException ex) {
+            // Expected
+        }
+    }
+    
+    /**
+     * Representations and faults that are referenced from several methods
+     * share a single node.
+     */
+    @Test
+    public void testSharedRepresentations() throws InvalidWADLException, IOException, URISyntaxException
+    {
+        ApplicationNode an = createBuilder().buildAst(
+                WadlAstBuilderTest.class.getResource("SharedRepresentations.wadl").toURI());
+        List<ResourceNode> resources = an.getResources().get(0).getChildResources();
+        MethodNode items = resources.get(0).getMethods().get(0);
+        MethodNode orders = resources.get(1).getMethods().get(0);
+        
+        RepresentationNode itemsOutput = items.getSupportedOutputs().values().iterator().next().get(0);
+        RepresentationNode ordersOutput = orders.getSupportedOutputs().values().iterator().next().get(0);
+        assertThat("Referenced representation resolved",
+                itemsOutput.getMediaType(), equalTo("application/xml"));
+        assertThat("Same node for each reference",
+                ordersOutput, sameInstance(itemsOutput));
+        
+        FaultNode itemsFault = items.getFaults().values().iterator().next().get(0);
+        FaultNode ordersFault = orders.getFaults().values().iterator().next().get(0);
+        assertThat("Referenced fault resolved",
+                itemsFault.getMediaType(), equalTo("text/plain"));
+        assertThat("Same fault node for each reference",
+                ordersFault, sameInstance(itemsFault));
+    }
+    
+    /**
+     * A href without a fragment is reported as an unresolved reference.
+     */
+    @Test
+    public void testFragmentlessHref() throws IOException, URISyntaxException
+    {
+        try {
+            createBuilder().buildAst(
+                    WadlAstBuilderTest.class.getResource("FragmentlessHref.wadl").toURI());
+            fail("Should not resolve a href without a fragment");
+        } catch (InvalidWADLException ex) {
+            assertThat(ex.getMessage(), containsString("Simple.wadl"));
+        }
+    }
+    
+    /**
+     * Equivalent URIs are normalized to the same value.
+     */
+    @Test
+    public void testNormalize()
+    {
+        assertThat(WadlAstBuilder.normalize(URI.create("HTTP://Example.COM:80/a/./b/../c.wadl#frag")),
+                equalTo(URI.create("http://example.com/a/c.wadl")));
+        assertThat(WadlAstBuilder.normalize(URI.create("http://example.com")),
+                equalTo(URI.create("http://example.com/")));
+        assertThat("Non default port and escapes are kept",
+                WadlAstBuilder.normalize(URI.create("https://example.com:8443/x?q=a%2Fb")),
+                equalTo(URI.create("https://example.com:8443/x?q=a%2Fb")));
+        assertThat(WadlAstBuilder.normalize(URI.create("file:///tmp/a/../b.xsd")),
+                equalTo(URI.create("file:/tmp/b.xsd")));
+    }
+    
+    /**
+     * A document is only loaded once, whatever URI is used to refer to it.
+     */
+    @Test
+    public void testLoadedDocuments() throws Exception
+    {
+        WadlAstBuilder builder = createBuilder();
+        URI simple = WadlAstBuilderTest.class.getResource("Simple.wadl").toURI();
+        builder.buildAst(simple);
+        
+        assertThat("One document loaded",
+                builder.getLoadedDocuments().size(), equalTo(1));
+        assertThat(builder.getLoadedDocuments().contains(WadlAstBuilder.normalize(simple)),
+                equalTo(true));
+        assertThat("Equivalent URI is not loaded again",
+                builder.processDescription(simple.resolve("./Simple.wadl#x")), nullValue());
+        assertThat(builder.getLoadedDocuments().size(), equalTo(1));
+    }
+    
+    /**
+     * A resource type is found whichever spelling of its document is used
+     * to refer to it.
+     */
+    @Test
+    public void testResourceTypeThroughTwoSpellings() throws Exception
+    {
+        File types = new File(folder.getRoot(), "Types.wadl");
+        write(types, 
+                "<application xmlns=\"http://wadl.dev.java.net/2009/02\">"
+                + "<resource_type id=\"t\"><method name=\"GET\" id=\"get\"/></resource_type>"
+                + "</application>");
+        // file:///path rather than the file:/path of File.toURI()
+        String absolute = "file://" + types.toURI().getRawPath();
+        File main = new File(folder.getRoot(), "Main.wadl");
+        write(main, 
+                "<application xmlns=\"http://wadl.dev.java.net/2009/02\">"
+                + "<resources base=\"http://example.com/api/\">"
+                + "<resource path=\"a\" type=\"Types.wadl#t\"/>"
+                + "<resource path=\"b\" type=\"" + absolute + "#t\"/>"
+                + "</resources></application>");
+        
+        ApplicationNode an = createBuilder().buildAst(main.toURI());
+        List<ResourceNode> resources = an.getResources().get(0).getChildResources();
+        ResourceTypeNode a = resources.get(0).getResourceTypes().get(0);
+        ResourceTypeNode b = resources.get(1).getResourceTypes().get(0);
+        assertThat("Same resource type for each spelling", b, sameInstance(a));
+    }
+    
+    /**
+     * Grammars fetched ahead of time must still reach the callback in the
+     * order that they are included, with their content intact.
+     */
+    @Test
+    public void testPrefetchKeepsIncludeOrder() throws InvalidWADLException, IOException, URISyntaxException
+    {
+        List<String> sequential = includedSchemas(1);
+        List<String> prefetched = includedSchemas(4);
+        
+        assertThat("Both schemas processed",
+                sequential.size(), equalTo(2));
+        assertThat("Same order when prefetched",
+                prefetched, equalTo(sequential));
+    }
+    
+    private static List<String> includedSchemas(int prefetchThreads) throws InvalidWADLException, IOException, URISyntaxException {
+        final List<String> schemas = new ArrayList<String>();
+        WadlAstBuilder builder = new WadlAstBuilder(
+                new WadlAstBuilder.SchemaCallback() {
+
+            public void processSchema(InputSource is) {
+                try {
+                    // Record the system id and the start of the content
+                    byte[] start = new byte[5];
+                    int read = is.getByteStream().read(start);
+                    schemas.add(is.getSystemId() + " " + new String(start, 0, read, "UTF-8"));
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            public void processSchema(String uri, Element node) {
+            }
+        },
+                new MessageListener() {
+
+            public void warning(String message, Throwable throwable) {
+            }
+
+            public void info(String message) {
+            }
+
+            public void error(String message, Throwable throwable) {
+            }
+        });
+        builder.setPrefetchThreads(prefetchThreads);
+        
+        builder.buildAst(WadlAstBuilderTest.class.getResource("SoapUIYahooSearch.wadl").toURI());
+        return schemas;
+    }
+    
+    private static void write(File file, String text) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(text.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+    }
+    
+    private static WadlAstBuilder createBuilder() {
+        return new WadlAstBuilder(
+                new WadlAstBuilder.SchemaCallback() {
+
+            public void processSchema(InputSource is) {
+            }
+
+            public void processSchema(String uri, Element node) {
+            }
+        },
+                new MessageListener() {
+
+            public void warning(String message, Throwable throwable) {
+            }
+
+            public void info(String message) {
+            }
+
+            public void error(String message, Throwable throwable) {
+            }
+        });
+    }
+    
 }
@@ -0,0 +1,74 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.ast;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat; 
+import static org.hamcrest.Matchers.*;
+
+
+/**
+ * Check the sharing rules of the {@link WadlContextHolder}.
+ */
+public class WadlContextHolderTest {
+    
+    /**
+     * The context is shared by the whole process.
+     */
+    @Test
+    public void testContextIsShared() throws Exception
+    {
+        JAXBContext context = WadlContextHolder.getContext();
+        
+        assertThat("Same context on each call", 
+                WadlContextHolder.getContext(), sameInstance(context));
+        assertThat("Same context on another thread",
+                onAnotherThread(new Callable<JAXBContext>() {
+                    public JAXBContext call() throws Exception {
+                        return WadlContextHolder.getContext();
+                    }
+                }), sameInstance(context));
+    }
+    
+    /**
+     * Each thread gets its own unmarshaller, which it then keeps.
+     */
+    @Test
+    public void testUnmarshallerPerThread() throws Exception
+    {
+        Unmarshaller unmarshaller = WadlContextHolder.getUnmarshaller();
+        
+        assertThat("Same unmarshaller on the same thread", 
+                WadlContextHolder.getUnmarshaller(), sameInstance(unmarshaller));
+        assertThat("Different unmarshaller on another thread",
+                onAnotherThread(new Callable<Unmarshaller>() {
+                    public Unmarshaller call() throws Exception {
+                        return WadlContextHolder.getUnmarshaller();
+                    }
+                }), not(sameInstance(unmarshaller)));
+    }
+    
+    private static <T> T onAnotherThread(Callable<T> callable) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(callable).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
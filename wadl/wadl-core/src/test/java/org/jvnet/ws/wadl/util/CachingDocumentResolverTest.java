@@ -0,0 +1,162 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Check the {@link CachingDocumentResolver} against a local server that
+ * supports ETag validation.
+ */
+public class CachingDocumentResolverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private volatile String document = "<grammar version=\"1\"/>";
+    private List<String> responses = Collections.synchronizedList(new ArrayList<String>());
+    private URI uri;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/schema.xsd", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String etag = "\"" + document.hashCode() + "\"";
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    responses.add("304");
+                    exchange.sendResponseHeaders(304, -1);
+                }
+                else {
+                    responses.add("200");
+                    byte[] content = document.getBytes("UTF-8");
+                    exchange.sendResponseHeaders(200, content.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(content);
+                    os.close();
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/schema.xsd");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Within the time to live the server is not contacted at all.
+     */
+    @Test
+    public void testCachedWithinTimeToLive() throws IOException
+    {
+        CachingDocumentResolver resolver = new CachingDocumentResolver(folder.getRoot())
+                .setTimeToLive(60000);
+
+        assertThat(read(resolver.openStream(uri)), equalTo(document));
+        assertThat(read(resolver.openStream(uri)), equalTo(document));
+        assertThat("Only fetched once",
+                responses, equalTo(list("200")));
+    }
+
+    /**
+     * Once the time to live has passed the document is revalidated, and only
+     * downloaded again if it has changed.
+     */
+    @Test
+    public void testRevalidatedWithETag() throws IOException
+    {
+        CachingDocumentResolver resolver = new CachingDocumentResolver(folder.getRoot());
+
+        assertThat(read(resolver.openStream(uri)), equalTo(document));
+        assertThat(read(resolver.openStream(uri)), equalTo(document));
+
+        document = "<grammar version=\"2\"/>";
+        assertThat(read(resolver.openStream(uri)), equalTo(document));
+        assertThat("Fetched, not modified, then fetched again",
+                responses, equalTo(list("200", "304", "200")));
+    }
+
+    /**
+     * The cache survives between instances, which is the whole point, and in
+     * offline mode the server is never contacted.
+     */
+    @Test
+    public void testOffline() throws IOException
+    {
+        String original = document;
+        read(new CachingDocumentResolver(folder.getRoot()).openStream(uri));
+        document = "<grammar version=\"2\"/>";
+
+        CachingDocumentResolver offline = new CachingDocumentResolver(folder.getRoot())
+                .setOffline(true);
+        assertThat("Cached copy even though it has changed",
+                read(offline.openStream(uri)), equalTo(original));
+        assertThat("Server only contacted by the first instance",
+                responses, equalTo(list("200")));
+
+        try {
+            offline.openStream(uri.resolve("other.xsd"));
+            fail("Uncached document should not be available offline");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    private static List<String> list(String... values) {
+        List<String> list = new ArrayList<String>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static String read(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                bos.write(buffer, 0, read);
+            }
+            return bos.toString("UTF-8");
+        } finally {
+            is.close();
+        }
+    }
+}
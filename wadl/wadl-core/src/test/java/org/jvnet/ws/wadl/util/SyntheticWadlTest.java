@@ -0,0 +1,146 @@
+/*
+ * The contents of this file are subject to the terms
+ * of the Common Development and Distribution License
+ * (the "License").  You may not use this file except
+ * in compliance with the License.
+ *
+ * You can obtain a copy of the license at
+ * http://www.opensource.org/licenses/cddl1.php
+ * See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.jvnet.ws.wadl.util;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.ws.wadl.ast.ApplicationNode;
+import org.jvnet.ws.wadl.ast.MethodNode;
+import org.jvnet.ws.wadl.ast.ResourceNode;
+import org.jvnet.ws.wadl.ast.WadlAstBuilder;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+
+/**
+ * Check that the descriptions written by {@link SyntheticWadl} can be read
+ * by the {@link WadlAstBuilder} without any warnings.
+ */
+public class SyntheticWadlTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> schemas = new ArrayList<String>();
+    private final List<String> messages = new ArrayList<String>();
+
+    /**
+     * Every feature at once, with the schema in a file of its own.
+     */
+    @Test
+    public void testIncludedSchemaAndReferences() throws Exception
+    {
+        SyntheticWadl generator = new SyntheticWadl()
+                .setResources(40)
+                .setDepth(3)
+                .setResourceTypes(2)
+                .setSharedParams(3)
+                .setHrefs(true)
+                .setSchemaStyle(SyntheticWadl.SchemaStyle.INCLUDED);
+        File description = generator.write(folder.getRoot(), "application.wadl");
+        assertThat("Schema written alongside",
+                new File(folder.getRoot(), generator.getSchemaHref()).isFile(), equalTo(true));
+
+        ApplicationNode an = build(description);
+        assertThat(count(an.getResources().get(0)), equalTo(40));
+        assertThat(schemas, equalTo(Arrays.asList("include")));
+        assertThat(messages.toString(), messages.isEmpty(), equalTo(true));
+
+        ResourceNode first = an.getResources().get(0).getChildResources().get(0);
+        assertThat("Methods from the resource type and by reference",
+                first.getMethods().size(), equalTo(2));
+        ResourceNode child = first.getChildResources().get(0);
+        assertThat(child.getPathSegment().getTemplateParameters().size(), equalTo(1));
+        MethodNode get = child.getMethods().get(0);
+        assertThat(get.getName(), equalTo("GET"));
+        assertThat("Shared parameter dereferenced",
+                get.getQueryParameters().get(0).getName(), equalTo("shared1"));
+    }
+
+    /**
+     * With a depth of one every resource is at the top level.
+     */
+    @Test
+    public void testEmbeddedSchema() throws Exception
+    {
+        SyntheticWadl generator = new SyntheticWadl()
+                .setResources(10)
+                .setDepth(1);
+        ApplicationNode an = build(generator.write(folder.getRoot(), "application.wadl"));
+
+        assertThat(an.getResources().get(0).getChildResources().size(), equalTo(10));
+        assertThat(schemas, equalTo(Arrays.asList("embedded")));
+        assertThat(messages.toString(), messages.isEmpty(), equalTo(true));
+    }
+
+    /**
+     * The same settings always produce the same document.
+     */
+    @Test
+    public void testRepeatable() throws Exception
+    {
+        SyntheticWadl generator = new SyntheticWadl()
+                .setResources(25)
+                .setSchemaStyle(SyntheticWadl.SchemaStyle.NONE);
+        StringWriter first = new StringWriter();
+        StringWriter second = new StringWriter();
+        generator.writeDescription(first);
+        generator.writeDescription(second);
+        assertThat(first.toString(), equalTo(second.toString()));
+        assertThat(first.toString(), not(containsString("grammars")));
+    }
+
+    private ApplicationNode build(File description) throws Exception {
+        WadlAstBuilder builder = new WadlAstBuilder(
+                new WadlAstBuilder.SchemaCallback() {
+
+            public void processSchema(InputSource is) {
+                schemas.add("include");
+            }
+
+            public void processSchema(String uri, Element node) {
+                schemas.add("embedded");
+            }
+        },
+                new MessageListener() {
+
+            public void warning(String message, Throwable throwable) {
+                messages.add(message != null ? message : throwable.getMessage());
+            }
+
+            public void info(String message) {
+            }
+
+            public void error(String message, Throwable throwable) {
+                messages.add(message != null ? message : throwable.getMessage());
+            }
+        });
+        return builder.buildAst(description.toURI());
+    }
+
+    private static int count(ResourceNode parent) {
+        int count = 0;
+        for (ResourceNode child : parent.getChildResources()) {
+            count += 1 + count(child);
+        }
+        return count;
+    }
+}
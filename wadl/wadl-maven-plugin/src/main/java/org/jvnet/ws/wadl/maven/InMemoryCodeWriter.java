@@ -0,0 +1,110 @@
+package org.jvnet.ws.wadl.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+
+/**
+ * A {@link CodeWriter} that keeps the generated files in memory so that the
+ * output of several WADL files processed concurrently can be checked for
+ * conflicts before anything is written to disk.
+ */
+class InMemoryCodeWriter extends CodeWriter {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, ByteArrayOutputStream> files =
+            new LinkedHashMap<String, ByteArrayOutputStream>();
+
+    @Override
+    public OutputStream openBinary(JPackage pkg, String fileName) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        files.put(toPath(pkg, fileName), bos);
+        return bos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Nothing to do until the files are written out
+    }
+
+    /**
+     * @return the relative paths, using '/' as the separator, of the 
+     *   generated files in the order they were written
+     */
+    public Iterable<String> getPaths() {
+        return files.keySet();
+    }
+
+    /**
+     * @param path a relative path as returned by {@link #getPaths()}.
+     * @return the content of the file.
+     */
+    public byte[] getContent(String path) {
+        return files.get(path).toByteArray();
+    }
+
+    /**
+     * @param path a relative path as returned by {@link #getPaths()}.
+     * @param other the content to compare with.
+     * @return true if the file has the same content, ignoring the lines
+     *   which only record when the file was generated.
+     */
+    public boolean hasSameContent(String path, byte[] other) {
+        return Arrays.equals(
+                withoutTimestamps(getContent(path)), withoutTimestamps(other));
+    }
+
+    /**
+     * Write a single file under the given directory.
+     *
+     * @param path a relative path as returned by {@link #getPaths()}.
+     * @param targetDirectory the root directory to write to.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(String path, File targetDirectory) throws IOException {
+        File file = new File(targetDirectory, path.replace('/', File.separatorChar));
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent.getAbsolutePath());
+        }
+        OutputStream os = new FileOutputStream(file);
+        try {
+            files.get(path).writeTo(os);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static String toPath(JPackage pkg, String fileName) {
+        return pkg.isUnnamed() ? fileName
+                : pkg.name().replace('.', '/') + '/' + fileName;
+    }
+
+    /**
+     * XJC and the resource class generators both record the time of
+     * generation, so drop those lines before comparing.
+     */
+    private static byte[] withoutTimestamps(byte[] content) {
+        String text = new String(content, UTF8);
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("// Generated on:") 
+                    || (trimmed.startsWith("@Generated(") && trimmed.contains("date ="))) {
+                continue;
+            }
+            sb.append(line).append('\n');
+        }
+        return sb.toString().getBytes(UTF8);
+    }
+}
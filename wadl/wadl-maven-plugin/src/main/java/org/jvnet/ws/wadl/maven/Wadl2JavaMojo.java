@@ -11,6 +11,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,8 +25,11 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.DirectoryScanner;
+import org.jvnet.ws.wadl.util.CachingDocumentResolver;
+import org.jvnet.ws.wadl2java.GenerationManifest;
 import org.jvnet.ws.wadl2java.Wadl2Java;
 
+import com.sun.codemodel.CodeWriter;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.writer.FileCodeWriter;
 
@@ -130,6 +139,122 @@ public class Wadl2JavaMojo extends AbstractMojo {
      */
     private List<String> xjcArguments = new ArrayList<String>();
 
+    /**
+     * A boolean, indicating if the generated accessors that do not take a
+     * client should share a single lazily created client rather than 
+     * creating a new one on each call.
+     *
+     * @parameter default="false"
+     */
+    private boolean sharedClient = false;
+
+    /**
+     * A boolean, indicating if the generated resource classes should use a
+     * URI template precompiled from the WADL rather than a UriBuilder and
+     * map on each call.
+     *
+     * @parameter default="false"
+     */
+    private boolean precompiledUriTemplates = false;
+
+    /**
+     * A boolean, indicating if each generated method should have a variant
+     * that returns a CompletionStage rather than blocking for the response.
+     * Only used with the jaxrs20 generation style.
+     *
+     * @parameter default="false"
+     */
+    private boolean asyncMethods = false;
+
+    /**
+     * A boolean, indicating if each method with an XML response that holds
+     * a list of child elements should have a variant that returns an
+     * iterator reading those elements one at a time.
+     *
+     * @parameter default="false"
+     */
+    private boolean streamingMethods = false;
+
+    /**
+     * A boolean, indicating if the generated client factory should register
+     * a resolver that creates a single JAXBContext for the generated JAXB
+     * packages rather than leaving it to the client.
+     *
+     * @parameter default="false"
+     */
+    private boolean jaxbContextResolver = false;
+
+    /**
+     * A boolean, indicating if the generated exceptions should skip filling
+     * in the stack trace, for clients that see a lot of error responses.
+     *
+     * @parameter default="false"
+     */
+    private boolean stacklessExceptions = false;
+
+    /**
+     * A boolean, indicating if the generated clients should cache the
+     * responses to GET requests and revalidate them with conditional requests
+     * using the ETag and Last-Modified headers.
+     *
+     * @parameter default="false"
+     */
+    private boolean responseCache = false;
+
+    /**
+     * The number of WADL files to process concurrently, each one with its own
+     * processor. The generated files are checked for conflicts and written
+     * out in the same order as they would be when processing sequentially.
+     *
+     * @parameter default="1"
+     */
+    private int threads = 1;
+
+    /**
+     * A boolean, indicating if generation should be skipped when the WADL
+     * files, the documents they include, the customizations and the
+     * parameters all have the same content as the last successful run. This 
+     * is tracked using a manifest of content hashes in the target directory.
+     *
+     * @parameter default="false"
+     */
+    private boolean incremental = false;
+
+    /**
+     * The number of threads used to fetch the grammars included by each WADL
+     * file concurrently; they are still processed in document order. Useful
+     * when the schemas are fetched from slow servers.
+     *
+     * @parameter default="1"
+     */
+    private int prefetchThreads = 1;
+
+    /**
+     * A directory in which to cache remote WADL and schema documents between
+     * builds, for example somewhere under the local repository. Documents
+     * are stored by content hash and revalidated using the ETag and 
+     * Last-Modified headers. When not set every document is fetched each time.
+     *
+     * @parameter
+     */
+    private File cacheDirectory;
+
+    /**
+     * The number of seconds a cached document is used before checking with
+     * the server that it hasn't changed.
+     *
+     * @parameter default="0"
+     */
+    private long cacheTimeToLive = 0;
+
+    /**
+     * When a cache directory is set, only use the cached documents and never 
+     * the network. Follows the Maven offline setting by default.
+     *
+     * @parameter expression="${settings.offline}"
+     */
+    private boolean offline;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         doExecute(failOnError ? new FailOnErrorPolicy()
                 : new LogOnlyErrorPolicy());
@@ -164,27 +289,176 @@ public class Wadl2JavaMojo extends AbstractMojo {
         // Process if we have found any URLS to work on
         try {
             assureTargetDirExistence();
-            Wadl2Java processor = createProcessor();
-            for (URI next : toProcess) {
-                try {
-                    processor.process(next);
-                } catch (JClassAlreadyExistsException jcae) {
-                    policy.process(jcae.getExistingClass().fullName()
-                            + " already exists.", jcae);
-                } catch (Exception e) {
-                    policy.process("Failed to generate sources from "
-                            + next.toASCIIString() + ".", e);
-                    throw new MojoExecutionException(
-                            e.getMessage(), e);
+
+            // Skip the work if nothing has changed since the last run, the
+            // manifest is removed first so a failed run is never trusted
+            File manifestFile = new File(targetDirectory, GenerationManifest.DEFAULT_FILE_NAME);
+            String fingerprint = createParameters().getFingerprint() 
+                    + "\nwadls=" + toProcess;
+            if (incremental) {
+                GenerationManifest previous = GenerationManifest.load(manifestFile);
+                if (previous != null) {
+                    previous.setDocumentResolver(createParameters().getDocumentResolver());
+                }
+                if (previous != null && previous.isUpToDate(fingerprint, targetDirectory)) {
+                    getLog().info("Generated sources are up to date, skipping "
+                            + toProcess.size() + " WADL file(s).");
+                    project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+                    return;
                 }
             }
+            if (manifestFile.exists() && !manifestFile.delete()) {
+                throw new IOException("Failed to delete " + manifestFile.getAbsolutePath());
+            }
+
+            GenerationManifest manifest = new GenerationManifest(fingerprint);
+            manifest.setDocumentResolver(createParameters().getDocumentResolver());
+            boolean complete;
+            if (threads > 1 && toProcess.size() > 1) {
+                complete = processConcurrently(toProcess, policy, manifest);
+            }
+            else {
+                complete = true;
+                Wadl2Java processor = createProcessor(
+                        manifest.record(new FileCodeWriter(targetDirectory)));
+                for (URI next : toProcess) {
+                    try {
+                        processor.process(next);
+                    } catch (Exception e) {
+                        complete = false;
+                        processFailure(next, e, policy);
+                    }
+                }
+                manifest.addDocuments(processor.getProcessedDocuments());
+            }
+            if (incremental && complete) {
+                manifest.store(manifestFile);
+            }
             project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
         } catch (IOException ioe) {
-            // This case cannot happen as we already check to
-            // see if the directory in in place
+            // The directory is already in place so this can only be a
+            // problem writing the generated files or the manifest
             //
 
-            policy.process("Unexpected exception creating processor", ioe);
+            policy.process("Unexpected exception writing to "
+                    + targetDirectory.getAbsolutePath(), ioe);
+        }
+    }
+
+    /**
+     * Process each WADL with its own processor on a bounded pool of threads,
+     * collecting the generated files in memory. The results are then merged 
+     * in the original order so that the files written, any conflicts and the
+     * first failure reported are the same for each build.
+     *
+     * @param toProcess the WADL files to process.
+     * @param policy the policy to apply to failures.
+     * @param manifest records the documents read and the files written.
+     * @return true if every WADL file was processed without a problem.
+     * @throws MojoExecutionException if a WADL file cannot be processed or
+     *   the policy requires it.
+     * @throws IOException if a generated file cannot be written.
+     */
+    private boolean processConcurrently(List<URI> toProcess, ErrorPolicy policy,
+            GenerationManifest manifest) 
+            throws MojoExecutionException, IOException {
+
+        boolean complete = true;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(threads, toProcess.size()));
+        try {
+            List<Future<GeneratedSources>> results = 
+                    new ArrayList<Future<GeneratedSources>>();
+            for (final URI next : toProcess) {
+                results.add(executor.submit(new Callable<GeneratedSources>() {
+                    public GeneratedSources call() throws Exception {
+                        InMemoryCodeWriter codeWriter = new InMemoryCodeWriter();
+                        Wadl2Java processor = createProcessor(codeWriter);
+                        processor.process(next);
+                        return new GeneratedSources(codeWriter, 
+                                processor.getProcessedDocuments());
+                    }
+                }));
+            }
+
+            // Merge step, look out for the same file being generated
+            // differently from two WADL files
+            Map<String, URI> generatedBy = new HashMap<String, URI>();
+            Map<String, InMemoryCodeWriter> generatedIn = new HashMap<String, InMemoryCodeWriter>();
+            for (int i = 0; i < toProcess.size(); i++) {
+                URI next = toProcess.get(i);
+                GeneratedSources generated;
+                try {
+                    generated = results.get(i).get();
+                } catch (ExecutionException ee) {
+                    complete = false;
+                    processFailure(next, ee.getCause(), policy);
+                    continue;
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException(
+                            "Interrupted whilst generating sources from "
+                            + next.toASCIIString() + ".", ie);
+                }
+
+                InMemoryCodeWriter codeWriter = generated.codeWriter;
+                manifest.addDocuments(generated.documents);
+                for (String path : codeWriter.getPaths()) {
+                    InMemoryCodeWriter previous = generatedIn.get(path);
+                    if (previous != null 
+                            && !previous.hasSameContent(path, codeWriter.getContent(path))) {
+                        complete = false;
+                        policy.process(path + " is generated differently from "
+                                + generatedBy.get(path).toASCIIString() + " and "
+                                + next.toASCIIString() + ".", null);
+                    }
+                    generatedBy.put(path, next);
+                    generatedIn.put(path, codeWriter);
+                    codeWriter.writeTo(path, targetDirectory);
+                    manifest.addGeneratedFile(path);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return complete;
+    }
+
+    /**
+     * The output of processing a single WADL file concurrently.
+     */
+    private static class GeneratedSources {
+
+        private final InMemoryCodeWriter codeWriter;
+        private final Set<URI> documents;
+
+        GeneratedSources(InMemoryCodeWriter codeWriter, Set<URI> documents) {
+            this.codeWriter = codeWriter;
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Report a failure to process a WADL file in the same way whether it was
+     * processed sequentially or concurrently.
+     *
+     * @param next the WADL file that failed.
+     * @param e the cause of the failure.
+     * @param policy the policy to apply.
+     * @throws MojoExecutionException if the policy requires it, or the failure
+     *   wasn't caused by a duplicate class.
+     */
+    private void processFailure(URI next, Throwable e, ErrorPolicy policy)
+            throws MojoExecutionException {
+        if (e instanceof JClassAlreadyExistsException) {
+            JClassAlreadyExistsException jcae = (JClassAlreadyExistsException) e;
+            policy.process(jcae.getExistingClass().fullName()
+                    + " already exists.", jcae);
+        } else {
+            policy.process("Failed to generate sources from "
+                    + next.toASCIIString() + ".", e);
+            throw new MojoExecutionException(
+                    e.getMessage(), e);
         }
     }
 
@@ -207,9 +481,18 @@ public class Wadl2JavaMojo extends AbstractMojo {
     /**
      * Create a new {@link Wadl2Java} processor, based on the Mojo parameters.
      *
+     * @param codeWriter the code writer for the generated files.
      * @return A new {@link Wadl2Java} instance.
      */
-    private Wadl2Java createProcessor() throws IOException {
+    private Wadl2Java createProcessor(CodeWriter codeWriter) {
+        return new Wadl2Java(createParameters().setCodeWriter(codeWriter));
+    }
+
+    /**
+     * @return The {@link Wadl2Java} parameters, based on the Mojo parameters,
+     *   without a code writer.
+     */
+    private Wadl2Java.Parameters createParameters() {
         List<File> customizationFiles = null;
         if (customizations != null) {
             customizationFiles = new ArrayList<File>(customizations.size());
@@ -220,13 +503,10 @@ public class Wadl2JavaMojo extends AbstractMojo {
             customizationFiles = Collections.EMPTY_LIST;
         }
 
-        if (customClassNames == null) {
-            customClassNames = new Properties();
-        }
-
         // convert objects from properties to String.
         HashMap<String, String> customClassNamesMap = new HashMap<String, String>();
-        for (Map.Entry<Object, Object> entry : customClassNames.entrySet()) {
+        Properties classNames = customClassNames != null ? customClassNames : new Properties();
+        for (Map.Entry<Object, Object> entry : classNames.entrySet()) {
             customClassNamesMap.put(entry.getKey().toString(), entry.getValue().toString());
         }
 
@@ -236,13 +516,23 @@ public class Wadl2JavaMojo extends AbstractMojo {
         parameters.setCustomizationsAsFiles(customizationFiles);
         parameters.setPkg(packageName);
         parameters.setRootDir(targetDirectory.toURI());
-        parameters.setCodeWriter(new FileCodeWriter(targetDirectory));
         parameters.setXjcArguments(xjcArguments);
         parameters.setGenerationStyle(generationStyle);
+        parameters.setSharedClient(sharedClient);
+        parameters.setPrecompiledUriTemplates(precompiledUriTemplates);
+        parameters.setAsyncMethods(asyncMethods);
+        parameters.setStreamingMethods(streamingMethods);
+        parameters.setJaxbContextResolver(jaxbContextResolver);
+        parameters.setStacklessExceptions(stacklessExceptions);
+        parameters.setResponseCache(responseCache);
+        parameters.setPrefetchThreads(prefetchThreads);
+        if (cacheDirectory != null) {
+            parameters.setDocumentResolver(new CachingDocumentResolver(cacheDirectory)
+                    .setTimeToLive(cacheTimeToLive * 1000)
+                    .setOffline(offline));
+        }
 
-        Wadl2Java processor = new Wadl2Java(parameters);
-
-        return processor;
+        return parameters;
     }
 
     /**
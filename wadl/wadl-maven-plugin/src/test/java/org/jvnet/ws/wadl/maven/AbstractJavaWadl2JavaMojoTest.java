@@ -124,11 +124,114 @@ public abstract class AbstractJavaWadl2JavaMojoTest<ClientType> extends Abstract
      */
     protected abstract String getReturnStatmentRegex();
     
+    /**
+     * Add a filter, generated for this implementation, to the client.
+     * @param client the client to add the filter to
+     * @param filter the filter
+     */
+    protected abstract void addFilter(ClientType client, Object filter);
+    
     // 
     // Here are the tests that can be shared between the two different implemntations
     //
 
     
+    /**
+     * Tests that more than one WADL file can be processed concurrently
+     * and that the output of each is merged into the target directory.
+     */
+    public void testConcurrentWadlFiles() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("concurrent-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        assertThat(targetDirectory, exists());
+        assertThat(targetDirectory, contains("test/ApiSearchYahooCom_NewsSearchServiceV1.java"));
+        assertThat(targetDirectory, contains("test/WwwExampleCom_Resource.java"));
+        assertThat(targetDirectory, contains("yahoo/yn/ObjectFactory.java"));
+        assertThat(targetDirectory, contains("com/example/beans/ObjectFactory.java"));
+
+        // Check that the generated code compiles
+        compile(targetDirectory);
+    }
+
+    /**
+     * Tests that two WADL files processed concurrently can generate the same
+     * file, here the classes for a shared schema, as long as the content is 
+     * the same apart from the time it was generated.
+     */
+    public void testConcurrentWadlFilesWithSameOutput() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("conflicting-wadl.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        assertThat(targetDirectory, contains("com/example/items/ObjectFactory.java"));
+        assertThat(targetDirectory, contains("com/example/items/Item.java"));
+
+        // Check that the generated code compiles
+        compile(targetDirectory);
+    }
+
+    /**
+     * Tests that two WADL files processed concurrently that generate the 
+     * same class differently are reported through the error policy.
+     */
+    public void testConcurrentWadlFilesWithConflictingOutput() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("conflicting-wadl.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "includes", 
+                "conflicting-wadl/First.wadl,conflicting-wadl/Clash.wadl");
+
+        // Replay, with failOnError the policy fails the build before the
+        // sources are added to the project
+        EasyMock.replay(_project);
+        try {
+            mojo.execute();
+            fail("Should have reported the conflict");
+        } catch (MojoExecutionException ex) {
+            assertThat(ex.getMessage(), containsString("is generated differently from"));
+            assertThat(ex.getMessage(), containsString("First.wadl"));
+            assertThat(ex.getMessage(), containsString("Clash.wadl"));
+        }
+
+        // Verify
+        EasyMock.verify(_project);
+    }
+
         /**
      * Tests the case in which a valid wadl file exists.
      */
@@ -1310,6 +1413,141 @@ public abstract class AbstractJavaWadl2JavaMojoTest<ClientType> extends Abstract
     }
 
     
+    /**
+     * Check that the precompiled templates expand to the same URI as the
+     * UriBuilder, encoding the template values, for nested resources and
+     * for a resource created from a full URI.
+     */
+    public void testPrecompiledUriTemplates() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("parameterized-wadl.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "precompiledUriTemplates", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify, the values are encoded by a copy of the PathSegment encoder
+        EasyMock.verify(_project);
+        assertThat(targetDirectory, contains("test/PercentEncoding.java"));
+        ClassLoader cl = compile(targetDirectory);
+
+        Class root = type("test.Localhost_JerseySchemaGenExamplesContextRootJersey").withClassLoader(cl)
+                .load();
+        Object pathParam1 = staticMethod("pathParam1").withParameterTypes(getClientClass(), String.class)
+                .in(root).invoke(_client, "a b/c");
+        Object param2 = method("param2").withParameterTypes(String.class).in(pathParam1).invoke("d%e");
+
+        method("getAsXml").withReturnType(String.class).withParameterTypes(Class.class).in(param2)
+                .invoke(String.class);
+        String base = "http://localhost:7101/JerseySchemaGen-Examples-context-root/jersey/path/";
+        assertThat(_requests.get(0).getURI().toString(),
+                equalTo(base + "a%20b%2Fc/d%25e"));
+
+        // A changed value gives a new URI
+        Object param3 = method("setParam2").withParameterTypes(String.class).in(param2).invoke("f");
+        method("getAsXml").withReturnType(String.class).withParameterTypes(Class.class).in(param3)
+                .invoke(String.class);
+        assertThat(_requests.get(1).getURI().toString(),
+                equalTo(base + "a%20b%2Fc/f"));
+
+        // Created from a full URI the path is used as is
+        Object param4 = constructor().withParameterTypes(getClientClass(), URI.class).in(
+                param2.getClass())
+                .newInstance(_client, URI.create(base + "x%20y/z"));
+        method("getAsXml").withReturnType(String.class).withParameterTypes(Class.class).in(param4)
+                .invoke(String.class);
+        assertThat(_requests.get(2).getURI().toString(),
+                equalTo(base + "x%20y/z"));
+
+        // Path parameters are still required
+        Object missing = method("param2").withParameterTypes(String.class).in(pathParam1)
+                .invoke((String) null);
+        try {
+            method("getAsXml").withReturnType(String.class).withParameterTypes(Class.class).in(missing)
+                    .invoke(String.class);
+            fail("Should have rejected the missing parameter");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), containsString("param2"));
+        }
+        assertThat(_requests.size(), equalTo(3));
+    }
+
+    /**
+     * Check that the precompiled templates append the matrix parameters of
+     * each resource in the path, along with the query parameters.
+     */
+    public void testPrecompiledUriTemplatesWithMatrixParameters() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("nested-wadl.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "precompiledUriTemplates", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        Class client = type("test.Nested").withClassLoader(cl).load();
+        Object root = staticMethod("root")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+        root = method("setRootm").withParameterTypes(String.class).in(root).invoke("XX Root");
+        root = method("setRepeatingm").withParameterTypes(List.class).in(root).invoke(
+                Arrays.asList("XXOne", "XX/Two"));
+        Object sub = method("sub").in(root).invoke();
+        sub = method("setSubm").withParameterTypes(String.class).in(sub).invoke("XXSubM");
+
+        _cannedResponse.add(new CannedResponse(200, "text/plain", "Nested"));
+        _cannedResponse.add(new CannedResponse(200, "text/plain", "Nested"));
+
+        List<String> repeating = Arrays.asList("XXOne", "XXTwo");
+        method("getAs").withReturnType(String.class)
+                .withParameterTypes(String.class, String.class, List.class, String.class, String.class, List.class, Class.class)
+                .in(sub)
+                .invoke(
+                    "subq", "submethodq", repeating,
+                    "subh", "submethodh", repeating,
+                    String.class);
+        String path = "/root;rootM=XX%20Root;repeatingM=XXOne;repeatingM=XX%2FTwo/sub;subM=XXSubM";
+        URI actual = _requests.get(0).getURI();
+        assertThat(actual.getRawPath(), equalTo(path));
+        compareUriAndSortQueryParams(actual, URI.create("http://example.com" + path
+                + "?subMethodQ=submethodq&repeatingQ=XXOne&repeatingQ=XXTwo&subQ=subq"));
+
+        // Without query parameters the resolved URI is used directly
+        method("getAs").withReturnType(String.class)
+                .withParameterTypes(String.class, String.class, List.class, String.class, String.class, List.class, Class.class)
+                .in(sub)
+                .invoke(
+                    null, null, null,
+                    null, null, null,
+                    String.class);
+        assertThat(_requests.get(1).getURI().toString(),
+                equalTo("http://example.com" + path));
+    }
+
+    
     /**
      * Tests the case where the methods produce application/xml but don't
      * have a matching schema. This results in duplicate methods being produced.
@@ -1430,6 +1668,167 @@ public abstract class AbstractJavaWadl2JavaMojoTest<ClientType> extends Abstract
     
 
 
+    /**
+     * Check that the streaming variant returns the repeated child elements
+     * of the response one at a time.
+     */
+    public void testStreamingMethods() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "streamingMethods", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        assertThat(targetDirectory, contains("test/ElementIterator.java"));
+        ClassLoader cl = compile(targetDirectory);
+
+        Class client = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+
+        _cannedResponse.add(new CannedResponse(
+                200, "text/xml", "<ResultSet xmlns=\"urn:yahoo:yn\">"
+                    + "<Result><Title>One</Title></Result>"
+                    + "<Result><Title>Two</Title><Thumbnail><Url>u</Url></Thumbnail></Result>"
+                    + "</ResultSet>"));
+
+        Object results = method("getAsResultSetStream").withReturnType(Object.class)
+                .withParameterTypes(String.class, String.class)
+                .in(newsService).invoke("news", "app");
+        Class iterator = results.getClass();
+        assertThat(iterator.getName(), equalTo("test.ElementIterator"));
+
+        StringBuilder titles = new StringBuilder();
+        while ((Boolean) iterator.getMethod("hasNext").invoke(results)) {
+            Object result = iterator.getMethod("next").invoke(results);
+            titles.append(field("title").ofType(String.class).in(result).get()).append(' ');
+        }
+        assertThat(titles.toString(), equalTo("One Two "));
+    }
+    
+
+    /**
+     * Check that the accessors that don't take a client reuse the one
+     * returned by sharedClient, rather than creating a new one each time.
+     */
+    public void testSharedClient() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "sharedClient", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        Class root = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        Object shared = staticMethod("sharedClient").withReturnType(Object.class).in(root).invoke();
+        assertNotNull(shared);
+        assertSame(shared, staticMethod("sharedClient").withReturnType(Object.class).in(root).invoke());
+
+        Object first = staticMethod("newsSearch").withReturnType(Object.class).in(root).invoke();
+        Object second = staticMethod("newsSearch").withReturnType(Object.class).in(root).invoke();
+        assertNotSame(first, second);
+        assertSame(shared, field("_client").ofType(Object.class).in(first).get());
+        assertSame(shared, field("_client").ofType(Object.class).in(second).get());
+
+        // The factory still creates a new client each time
+        assertNotSame(shared, staticMethod("createClient").withReturnType(Object.class).in(root).invoke());
+    }
+    
+
+    /**
+     * Check that the generated resolver hands out one context for the
+     * generated packages and leaves other types alone, and that it is the
+     * context used by the streaming methods.
+     */
+    public void testJAXBContextResolver() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "jaxbContextResolver", true);
+        setVariableValueToObject(mojo, "streamingMethods", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        assertThat(targetDirectory, contains("test/JAXBContextResolver.java"));
+        ClassLoader cl = compile(targetDirectory);
+
+        // One resolver for the package rather than one for each root class
+        Class resolverClass = cl.loadClass("test.JAXBContextResolver");
+        Object resolver = resolverClass.newInstance();
+        Method getContext = resolverClass.getMethod("getContext", Class.class);
+        Object context = getContext.invoke(resolver, cl.loadClass("yahoo.yn.ResultSet"));
+        assertNotNull(context);
+        assertSame(context, getContext.invoke(resolver, cl.loadClass("yahoo.api.Error")));
+        assertNull(getContext.invoke(resolver, String.class));
+
+        // The factory registers it
+        Class client = cl.loadClass("test.ApiSearchYahooCom_NewsSearchServiceV1");
+        assertNotNull(client.getMethod("createClient").invoke(null));
+        for (Class next : client.getDeclaredClasses()) {
+            assertThat(next.getSimpleName(), not(equalTo("JAXBContextResolver")));
+        }
+
+        // The streaming methods use the same context rather than their own
+        Class iterator = cl.loadClass("test.ElementIterator");
+        for (java.lang.reflect.Field next : iterator.getDeclaredFields()) {
+            assertThat(next.getName(), not(equalTo("CONTEXTS")));
+        }
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+        _cannedResponse.add(new CannedResponse(
+                200, "text/xml", "<ResultSet xmlns=\"urn:yahoo:yn\">"
+                    + "<Result><Title>One</Title></Result>"
+                    + "</ResultSet>"));
+        Object results = method("getAsResultSetStream").withReturnType(Object.class)
+                .withParameterTypes(String.class, String.class)
+                .in(newsService).invoke("news", "app");
+        assertTrue((Boolean) iterator.getMethod("hasNext").invoke(results));
+        Object result = iterator.getMethod("next").invoke(results);
+        assertThat(field("title").ofType(String.class).in(result).get(), equalTo("One"));
+    }
+    
+
     /**
      * Add a test to verify that exceptions are throw properly
      */
@@ -1493,6 +1892,206 @@ public abstract class AbstractJavaWadl2JavaMojoTest<ClientType> extends Abstract
         }
     }
     
+    /**
+     * Check that the exceptions can be generated without a stack trace and
+     * that the fault info is still read when asked for.
+     */
+    public void testStacklessExceptions() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "stacklessExceptions", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        Class client = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+
+        _cannedResponse.add(new CannedResponse(
+                400, "text/xml", "<Error xmlns=\"urn:yahoo:api\"><Message>42</Message></Error>"));
+        _cannedResponse.add(new CannedResponse(
+                500, "text/plain", "Broken"));
+
+        try
+        {
+            method("getAsTextXml").withReturnType(String.class)
+                    .withParameterTypes(String.class, String.class, Class.class)
+                    .in(newsService).invoke("not","at", String.class);
+            fail("Should have thrown an exception");
+        }
+        catch (WebApplicationException ex)
+        {
+            assertThat(ex.getStackTrace().length, equalTo(0));
+            Object faultInfo = method("getFaultInfo").in(ex).invoke();
+            assertSame(faultInfo, method("getFaultInfo").in(ex).invoke());
+            List content = field("content").ofType(List.class).in(faultInfo).get();
+            String message = ((Element)((JAXBElement)content.get(0)).getValue()).getTextContent();
+            assertThat(message, equalTo("42"));
+        }
+
+        // Status codes without a fault use the generic exception
+        try
+        {
+            method("getAsTextXml").withReturnType(String.class)
+                    .withParameterTypes(String.class, String.class, Class.class)
+                    .in(newsService).invoke("not","at", String.class);
+            fail("Should have thrown an exception");
+        }
+        catch (WebApplicationException ex)
+        {
+            assertThat(ex.getStackTrace().length, equalTo(0));
+            assertThat(ex.toString(), containsString("500"));
+        }
+    }
+    
+    /**
+     * Check that the response cache revalidates what it holds and replays
+     * it when the server says it has not changed.
+     */
+    public void testResponseCache() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "responseCache", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        // The factory registers the cache, but the test client needs it too
+        Class client = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        assertNotNull(client.getMethod("createClient").invoke(null));
+        addFilter(_client, cl.loadClass("test.ApiSearchYahooCom_NewsSearchServiceV1$ResponseCache").newInstance());
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+
+        String document = "<ResultSet xmlns=\"urn:yahoo:yn\"><Result><Title>One</Title></Result></ResultSet>";
+        CannedResponse first = new CannedResponse(200, "text/xml", document);
+        first.headers.add("ETag", "\"1\"");
+        _cannedResponse.add(first);
+        _cannedResponse.add(new CannedResponse(304, "text/xml", ""));
+
+        String result = method("getAsTextXml").withReturnType(String.class)
+                .withParameterTypes(String.class, String.class, Class.class)
+                .in(newsService).invoke("news", "app", String.class);
+        assertThat(result, equalTo(document));
+
+        // The server has nothing to send, the cached copy is used
+        result = method("getAsTextXml").withReturnType(String.class)
+                .withParameterTypes(String.class, String.class, Class.class)
+                .in(newsService).invoke("news", "app", String.class);
+        assertThat(result, equalTo(document));
+        assertThat(_requests.size(), equalTo(2));
+        assertThat(_requests.get(0).getHeader("If-None-Match"), nullValue());
+        assertThat(_requests.get(1).getHeader("If-None-Match"), equalTo("\"1\""));
+    }
+
+    /**
+     * Check that a full cache drops the least recently used response, which
+     * is then fetched again without a validator.
+     */
+    public void testResponseCacheEviction() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "responseCache", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        // Room for four responses, no single one may take more than a quarter
+        int length = resultSet("1").getBytes("UTF-8").length;
+        Class client = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        Class cacheClass = cl.loadClass("test.ApiSearchYahooCom_NewsSearchServiceV1$ResponseCache");
+        addFilter(_client, cacheClass.getConstructor(int.class).newInstance(4 * length));
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+
+        // Fill the cache, then use the first response again
+        for (String query : new String[] {"1", "2", "3", "4"}) {
+            assertThat(search(newsService, query, false), equalTo(resultSet(query)));
+        }
+        assertThat(search(newsService, "1", true), equalTo(resultSet("1")));
+        assertThat(_requests.get(4).getHeader("If-None-Match"), equalTo("\"1\""));
+
+        // A fifth response drops the least recently used, the second
+        assertThat(search(newsService, "5", false), equalTo(resultSet("5")));
+        assertThat(search(newsService, "2", false), equalTo(resultSet("2")));
+        assertThat(_requests.get(6).getHeader("If-None-Match"), nullValue());
+
+        // Which in turn dropped the third, the first is still there
+        assertThat(search(newsService, "1", true), equalTo(resultSet("1")));
+        assertThat(_requests.get(7).getHeader("If-None-Match"), equalTo("\"1\""));
+        assertThat(search(newsService, "3", false), equalTo(resultSet("3")));
+        assertThat(_requests.get(8).getHeader("If-None-Match"), nullValue());
+        assertThat(_requests.size(), equalTo(9));
+    }
+
+    private static String resultSet(String title) {
+        return "<ResultSet xmlns=\"urn:yahoo:yn\"><Result><Title>" + title 
+                + "</Title></Result></ResultSet>";
+    }
+
+    /**
+     * Search with a canned response, either a 304 so that the cached copy 
+     * must be used or a new document with an ETag.
+     */
+    private String search(Object newsService, String query, boolean cached) {
+        if (cached) {
+            _cannedResponse.add(new CannedResponse(304, "text/xml", ""));
+        } else {
+            CannedResponse response = new CannedResponse(200, "text/xml", resultSet(query));
+            response.headers.add("ETag", "\"" + query + "\"");
+            _cannedResponse.add(response);
+        }
+        return method("getAsTextXml").withReturnType(String.class)
+                .withParameterTypes(String.class, String.class, Class.class)
+                .in(newsService).invoke(query, "app", String.class);
+    }
+    
     /**
      * Add a test to verify that if there is a regular expression in the 
      * parameter that we generate just the parameter name
@@ -68,6 +68,11 @@ public abstract class AbstractWadl2JavaMojoTest extends AbstractMojoTestCase {
        public URI getURI();
        public String getMethod();
        public String getBodyAsString();
+       /**
+        * @param name the name of a request header.
+        * @return the first value of the header, or null if it wasn't sent.
+        */
+       public String getHeader(String name);
     }
     
     
@@ -13,9 +13,17 @@ package org.jvnet.ws.wadl.maven;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.xml.bind.JAXBElement;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -32,8 +40,17 @@ import org.glassfish.jersey.client.spi.Connector;
 import org.glassfish.jersey.client.spi.ConnectorProvider;
 import org.glassfish.jersey.moxy.json.MoxyJsonFeature;
 
+import org.codehaus.plexus.util.FileUtils;
+import org.easymock.classextension.EasyMock;
 import org.fest.reflect.field.Invoker;
 import static org.fest.reflect.core.Reflection.field;
+import static org.fest.reflect.core.Reflection.method;
+import static org.fest.reflect.core.Reflection.staticMethod;
+import static org.fest.reflect.core.Reflection.type;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import org.w3c.dom.Element;
 
 
 /**
@@ -74,6 +91,10 @@ public class Wadl2JavaMojoJAXRS20Test
                                     public String getBodyAsString() {
                                         throw new UnsupportedOperationException("Not supported yet.");
                                     }
+
+                                    public String getHeader(String name) {
+                                        return cr.getHeaderString(name);
+                                    }
                                 });
 
                         // Generate some pre-canned response
@@ -102,8 +123,24 @@ public class Wadl2JavaMojoJAXRS20Test
 
                     }
 
-                    public Future<?> apply(ClientRequest cr, AsyncConnectorCallback acc) {
-                        throw new UnsupportedOperationException("Not supported yet.");
+                    public Future<?> apply(final ClientRequest cr, AsyncConnectorCallback acc) {
+                        // Respond straight away, on the thread Jersey
+                        // provides for the asynchronous request
+                        FutureTask<ClientResponse> task = new FutureTask<ClientResponse>(
+                                new Callable<ClientResponse>() {
+                                    public ClientResponse call() {
+                                        return apply(cr);
+                                    }
+                                });
+                        task.run();
+                        try {
+                            acc.response(task.get());
+                        } catch (ExecutionException ex) {
+                            acc.failure(ex.getCause());
+                        } catch (InterruptedException ex) {
+                            acc.failure(ex);
+                        }
+                        return task;
                     }
 
                     public void close() {
@@ -176,4 +213,80 @@ public class Wadl2JavaMojoJAXRS20Test
         return "return response.readEntity";
     }
 
+    @Override
+    protected void addFilter(Client client, Object filter) {
+        client.register(filter);
+    }
+
+    /**
+     * Check that the asynchronous variants sit next to the blocking methods,
+     * that the faults are not part of their signature and that they complete
+     * with the entity, or exceptionally with the mapped fault.
+     */
+    public void testAsyncMethods() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("soapui-yahoo-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "asyncMethods", true);
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+
+        // Verify
+        EasyMock.verify(_project);
+        ClassLoader cl = compile(targetDirectory);
+
+        Class client = type("test.ApiSearchYahooCom_NewsSearchServiceV1").withClassLoader(cl).load();
+        Object newsService = staticMethod("newsSearch")
+                .withParameterTypes(getClientClass(), URI.class).in(client).invoke(
+                    _client, URI.create("http://example.com/"));
+        Method async = newsService.getClass().getMethod("getAsTextXmlAsync",
+                String.class, String.class, Class.class);
+        assertThat(async.getReturnType().getName(),
+                equalTo("java.util.concurrent.CompletionStage"));
+        assertThat(async.getExceptionTypes().length, equalTo(0));
+
+        String document = "<ResultSet xmlns=\"urn:yahoo:yn\"><Result><Title>One</Title></Result></ResultSet>";
+        _cannedResponse.add(new CannedResponse(200, "text/xml", document));
+        _cannedResponse.add(new CannedResponse(
+                400, "text/xml", "<Error xmlns=\"urn:yahoo:api\"><Message>42</Message></Error>"));
+
+        Future<?> result = toFuture(async.invoke(newsService, "news", "app", String.class));
+        assertThat((String) result.get(10, TimeUnit.SECONDS), equalTo(document));
+
+        // The fault is mapped on completion rather than thrown
+        Future<?> fault = toFuture(async.invoke(newsService, "not", "at", String.class));
+        try {
+            fault.get(10, TimeUnit.SECONDS);
+            fail("Should have completed exceptionally");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            assertThat(cause, instanceOf(WebApplicationException.class));
+            assertThat(cause.getClass().getName(), equalTo("test.SearchErrorException"));
+            Object faultInfo = method("getFaultInfo").in(cause).invoke();
+            List content = field("content").ofType(List.class).in(faultInfo).get();
+            String message = ((Element)((JAXBElement)content.get(0)).getValue()).getTextContent();
+            assertThat(message, equalTo("42"));
+        }
+        assertThat(_requests.size(), equalTo(2));
+    }
+
+    /**
+     * @return the future behind a CompletionStage, without depending on
+     *  Java 8 at compile time
+     */
+    private static Future<?> toFuture(Object stage) {
+        return (Future<?>) method("toCompletableFuture").withReturnType(Object.class)
+                .in(stage).invoke();
+    }
+
 }
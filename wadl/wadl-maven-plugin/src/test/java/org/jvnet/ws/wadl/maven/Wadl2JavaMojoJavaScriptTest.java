@@ -123,6 +123,10 @@ public class Wadl2JavaMojoJavaScriptTest
                             public String getBodyAsString() {
                                 return webRequest.getRequestBody();
                             }
+
+                            public String getHeader(String name) {
+                                return webRequest.getAdditionalHeaders().get(name);
+                            }
                             
                             
                         });
@@ -15,6 +15,7 @@ package org.jvnet.ws.wadl.maven;
 import com.sun.jersey.api.client.*;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.ClientFilter;
 import com.sun.jersey.api.json.JSONConfiguration;
 import com.sun.jersey.core.header.InBoundHeaders;
 import java.io.ByteArrayInputStream;
@@ -79,6 +80,11 @@ public class Wadl2JavaMojoTest extends AbstractJavaWadl2JavaMojoTest<Client> {
                             public String getBodyAsString() {
                                 throw new UnsupportedOperationException("Not supported yet."); 
                             }
+
+                            public String getHeader(String name) {
+                                Object value = cr.getHeaders().getFirst(name);
+                                return value == null ? null : value.toString();
+                            }
                         });
 
                 ClientResponse resp;
@@ -145,6 +151,11 @@ public class Wadl2JavaMojoTest extends AbstractJavaWadl2JavaMojoTest<Client> {
         return "return response.getEntity";
     }
     
+    @Override
+    protected void addFilter(Client client, Object filter) {
+        client.addFilter((ClientFilter) filter);
+    }
+    
     
     
     
@@ -402,6 +413,52 @@ public class Wadl2JavaMojoTest extends AbstractJavaWadl2JavaMojoTest<Client> {
         // Look for the getEmp method that was going missing
         assertNotNull($Sub.getDeclaredMethod("getAsEmp"));
     }
+
+    
+    /**
+     * Tests that a second run with the same inputs is skipped, and that a run
+     * with different parameters regenerates the code.
+     */
+    public void testIncrementalGeneration() throws Exception {
+        // Prepare
+        Wadl2JavaMojo mojo = getMojo("incremental-wadl-config.xml");
+        File targetDirectory = (File) getVariableValueFromObject(mojo,
+                "targetDirectory");
+        if (targetDirectory.exists()) {
+            FileUtils.deleteDirectory(targetDirectory);
+        }
+        setVariableValueToObject(mojo, "project", _project);
+        File generated = new File(targetDirectory, 
+                "test/ApiSearchYahooCom_NewsSearchServiceV1.java");
+
+        // Record
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+        _project.addCompileSourceRoot(targetDirectory.getAbsolutePath());
+
+        // Replay
+        EasyMock.replay(_project);
+        mojo.execute();
+        assertThat(targetDirectory, contains(".wadl2java-manifest"));
+        
+        // Nothing has changed so the marker should survive
+        FileUtils.fileWrite(generated.getAbsolutePath(), "// marker");
+        mojo = getMojo("incremental-wadl-config.xml");
+        setVariableValueToObject(mojo, "project", _project);
+        mojo.execute();
+        assertThat(FileUtils.fileRead(generated), equalTo("// marker"));
+
+        // A different parameter should cause the code to be generated again
+        mojo = getMojo("incremental-wadl-config.xml");
+        setVariableValueToObject(mojo, "project", _project);
+        setVariableValueToObject(mojo, "sharedClient", true);
+        mojo.execute();
+        assertThat(FileUtils.fileRead(generated), not(equalTo("// marker")));
+
+        // Verify
+        EasyMock.verify(_project);
+        compile(targetDirectory);
+    }
     
     
     
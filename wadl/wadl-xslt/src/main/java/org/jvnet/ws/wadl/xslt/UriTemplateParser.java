@@ -1,8 +1,13 @@
 package org.jvnet.ws.wadl.xslt;
 
 /**
- * A simple parser for URI templates.
- * 
+ * A simple parser for URI templates. Parameters may carry a regular
+ * expression, as in <code>{id: \d{3}}</code>, which can itself contain
+ * braces; only the name of the parameter is passed to the handler.
+ * <p>
+ * This follows the same rules as <code>UriTemplateTokenizer</code> in
+ * wadl-core, which this module cannot depend on, except that a parameter
+ * that is never closed is still reported as a parameter.
  */
 public class UriTemplateParser {
 
@@ -23,19 +28,23 @@ public class UriTemplateParser {
 		int pos = 0;
 		final int length = template.length();
 		State state = State.OutsideParam;
+		int depth = 0;
 		StringBuilder builder = new StringBuilder();
 		while (pos < length) {
 			char c = template.charAt(pos++);
 			switch (state) {
 			case InsideParam: {
-				if (c == '}') {
-					if (builder.length() > 0) {
-						handler.handleParam(builder.toString());
-						builder.setLength(0);
-					}
+				if (c == '}' && depth == 0) {
+					handleParam(builder, handler);
 					state = State.OutsideParam;
 				}
 				else {
+					if (c == '{') {
+						depth++;
+					}
+					else if (c == '}') {
+						depth--;
+					}
 					builder.append(c);
 				}
 				break;
@@ -46,6 +55,7 @@ public class UriTemplateParser {
 						handler.handleText(builder.toString());
 						builder.setLength(0);
 					}
+					depth = 0;
 					state = State.InsideParam;
 				}
 				else {
@@ -55,16 +65,29 @@ public class UriTemplateParser {
 			}
 			}
 		}
-		if (builder.length() > 0) {
-			switch (state) {
-			case InsideParam:
-				handler.handleParam(builder.toString());
-				break;
-			case OutsideParam:
+		switch (state) {
+		case InsideParam:
+			handleParam(builder, handler);
+			break;
+		case OutsideParam:
+			if (builder.length() > 0) {
 				handler.handleText(builder.toString());
-				break;
 			}
+			break;
+		}
+	}
+
+	/**
+	 * Pass the name of a parameter to the handler, dropping any regular
+	 * expression, and clear the builder.
+	 */
+	private static void handleParam(StringBuilder builder, Handler handler) {
+		int colon = builder.indexOf(":");
+		String name = (colon == -1 ? builder.toString() : builder.substring(0, colon)).trim();
+		if (name.length() > 0) {
+			handler.handleParam(name);
 		}
+		builder.setLength(0);
 	}
 
 	/**
@@ -1,6 +1,11 @@
 package org.jvnet.ws.wadl.xslt;
 
+import java.io.IOException;
 import java.io.InputStream;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
 
 /**
  * A collection of helper utilities for accessing common XSL scripts and 
@@ -9,6 +14,15 @@ import java.io.InputStream;
  */
 public class WadlXsltUtils {
 
+    /**
+     * The XSLTC implementation that ships with the JDK, used in preference
+     * to whatever happens to be on the class path
+     */
+    private static final String XSLTC_TRANSFORMER_FACTORY = 
+            "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl";
+    
+    private static volatile Templates upgradeTemplates;
+
     /**
      * @return A transform that upgrades the current WADL to the '2009 
      *   standard
@@ -17,6 +31,44 @@ public class WadlXsltUtils {
         return WadlXsltUtils.class.getResourceAsStream("upgrade.xsl");
     }
 
+    /**
+     * The compiled form of {@link #getUpgradeTransformAsStream()}, this is
+     * created on first use and then shared by the whole process. The
+     * returned instance is thread safe; but each thread should create its
+     * own {@link javax.xml.transform.Transformer} from it.
+     * 
+     * @return The compiled templates for the upgrade transform
+     * @throws TransformerConfigurationException if the transform cannot be
+     *   compiled
+     */
+    public static Templates getUpgradeTemplates() 
+            throws TransformerConfigurationException {
+        Templates templates = upgradeTemplates;
+        if (templates == null) {
+            synchronized (WadlXsltUtils.class) {
+                templates = upgradeTemplates;
+                if (templates == null) {
+                    TransformerFactory tf = TransformerFactory.newInstance(
+                            XSLTC_TRANSFORMER_FACTORY, 
+                            TransformerFactory.class.getClassLoader());
+                    InputStream is = getUpgradeTransformAsStream();
+                    try {
+                        templates = tf.newTemplates(new StreamSource(is));
+                    }
+                    finally {
+                        try {
+                            is.close();
+                        } catch (IOException ex) {
+                            // Ignore, we have already read the stylesheet
+                        }
+                    }
+                    upgradeTemplates = templates;
+                }
+            }
+        }
+        return templates;
+    }
+
     /**
      * A the moment this template requires the Oracle XDK; but in future the ideal
      * is to move towards a vanilla XSLT document without any specific parser or
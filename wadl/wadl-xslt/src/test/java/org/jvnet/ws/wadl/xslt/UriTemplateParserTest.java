@@ -41,6 +41,15 @@ public class UriTemplateParserTest {
 		verifyNoMoreInteractions(handler);
 	}
 	
+	@Test
+	public void shouldStripRegularExpression() {
+		UriTemplateParser.parse("bc/{ id : \\d{3}}/de", handler);
+		verify(handler).handleText("bc/");
+		verify(handler).handleParam("id");
+		verify(handler).handleText("/de");
+		verifyNoMoreInteractions(handler);
+	}
+	
 	@Test
 	public void shouldParseEmpty() {
 		UriTemplateParser.parse("", handler);
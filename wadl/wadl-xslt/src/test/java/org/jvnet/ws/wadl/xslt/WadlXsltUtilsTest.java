@@ -2,6 +2,7 @@ package org.jvnet.ws.wadl.xslt;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 
@@ -26,5 +27,16 @@ public class WadlXsltUtilsTest {
         assertThat(WadlXsltUtils.getUpgradeTransformAsStream(), notNullValue());
         assertThat(WadlXsltUtils.getWadlSummaryTransform(), notNullValue());
     }
+
+    
+    @Test
+    public void upgradeTemplatesAreSharedTest() throws Exception {
+        
+        // The compiled stylesheet should only be created the once
+        assertThat(WadlXsltUtils.getUpgradeTemplates(), notNullValue());
+        assertThat(WadlXsltUtils.getUpgradeTemplates(), 
+                sameInstance(WadlXsltUtils.getUpgradeTemplates()));
+        assertThat(WadlXsltUtils.getUpgradeTemplates().newTransformer(), notNullValue());
+    }
     
 }